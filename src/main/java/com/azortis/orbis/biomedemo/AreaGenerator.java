@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.point.ChunkBiomePointSampler;
+import com.azortis.orbis.biomedemo.point.CompiledDimension;
+import com.azortis.orbis.biomedemo.point.GatheredPoint;
+import com.azortis.orbis.biomedemo.point.NoiseFieldCache;
+import com.azortis.orbis.biomedemo.point.UnfilteredPointGatherer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates the blended biomes of a rectangle of chunks, split over the threads of a {@link ForkJoinPool}. Every
+ * chunk only depends on the dimension and its own position, so the result is the same as generating the chunks one
+ * by one, in whatever order the threads get to them.
+ *
+ * The rectangle is split in halves along its longest side until single chunks remain, so each thread works on
+ * neighbouring chunks until it runs out and steals a part from another. Each thread keeps its own noise fields,
+ * threads sharing one would keep evicting each other's cells and writing to the same cache lines.
+ */
+public final class AreaGenerator {
+
+    // Around the block a cell point is in, any point within it is gathered as a point of the block.
+    private static final int CELL_SEARCH_RADIUS = 2;
+
+    private final CompiledDimension compiledDimension;
+    private final ScatteredBiomeBlender blender;
+    private final int chunkWidth;
+    private final int searchRadius;
+    private final ThreadLocal<NoiseFieldCache> noiseCaches;
+
+    public AreaGenerator(CompiledDimension compiledDimension, ScatteredBiomeBlender blender, int chunkWidth,
+                         int searchRadius) {
+        final Dimension dimension = compiledDimension.getDimension();
+        this.compiledDimension = compiledDimension;
+        this.blender = blender;
+        this.chunkWidth = chunkWidth;
+        this.searchRadius = searchRadius;
+        this.noiseCaches = ThreadLocal.withInitial(() -> new NoiseFieldCache(dimension.getSeed(),
+                1.0d / dimension.getCellZoom(), dimension.getPrecision(), false));
+    }
+
+    /**
+     * Generates the chunks with their base in the rectangle, from the minimum in steps of the chunk width.
+     *
+     * @param consumer Called from the threads of the pool, at most once for each chunk, so writing the chunks to
+     *                 separate places needs no locking. Everything it did is visible once this returns.
+     */
+    public void generate(ForkJoinPool pool, int minX, int minZ, int width, int height, ChunkConsumer consumer) {
+        if (width <= 0 || height <= 0) return;
+        final int chunksX = (width + chunkWidth - 1) / chunkWidth;
+        final int chunksZ = (height + chunkWidth - 1) / chunkWidth;
+        pool.invoke(new ChunkTask(minX, minZ, 0, 0, chunksX, chunksZ, consumer));
+    }
+
+    /**
+     * Generates a single chunk on the calling thread.
+     */
+    public LinkedBiomeWeightMap generateChunk(int chunkX, int chunkZ) {
+        final long seed = compiledDimension.getDimension().getSeed();
+        ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCaches.get(), chunkWidth,
+                searchRadius, chunkX, chunkZ);
+        return blender.getBlendForChunk(seed, chunkX, chunkZ, sampler::getBiomeAt);
+    }
+
+    /**
+     * Samples the biome of the closest cell point, without blending, on the calling thread. Far cheaper per block than
+     * generating chunks, for when blocks are further apart than the blend radius anyway. Blocks further apart than the
+     * cells each get their closest cell point evaluated on its own, see {@link #sampleCells(int, int, int, int)}.
+     *
+     * @return The biomes of size by size blocks step apart from the minimum, indexed by z * size + x.
+     */
+    public int[] sampleArea(int minX, int minZ, int size, int step) {
+        if (step > compiledDimension.getDimension().getCellZoom()) return sampleCells(minX, minZ, size, step);
+        final int width = (size - 1) * step + 1;
+        ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCaches.get(), width,
+                compiledDimension.getSearchRadius(0), minX, minZ);
+        int[] biomes = new int[size * size];
+        for (int zi = 0; zi < size; zi++) {
+            for (int xi = 0; xi < size; xi++) {
+                biomes[zi * size + xi] = sampler.getBiomeAt(minX + xi * step, minZ + zi * step);
+            }
+        }
+        return biomes;
+    }
+
+    // Looks up the closest cell point of every block directly and evaluates only those, each with just the points
+    // around it. An area sampler over blocks this far apart would mostly evaluate the cell points in between them.
+    private int[] sampleCells(int minX, int minZ, int size, int step) {
+        final long seed = compiledDimension.getDimension().getSeed();
+        final NoiseFieldCache noiseCache = noiseCaches.get();
+        // Gathers around the closest lattice vertex, the search radius reaches the closest point from any position.
+        UnfilteredPointGatherer<Void> gatherer = new UnfilteredPointGatherer<>(noiseCache.getCellFrequency(),
+                compiledDimension.getSearchRadius(0));
+        Map<Long, Integer> cellBiomes = new HashMap<>();
+        int[] biomes = new int[size * size];
+        for (int zi = 0; zi < size; zi++) {
+            for (int xi = 0; xi < size; xi++) {
+                final int x = minX + xi * step;
+                final int z = minZ + zi * step;
+                GatheredPoint<Void> closestPoint = null;
+                double closestDistanceSq = Double.MAX_VALUE;
+                for (GatheredPoint<Void> point : gatherer.getPoints(seed, x, z)) {
+                    final double dX = point.getX() - x;
+                    final double dZ = point.getZ() - z;
+                    final double distanceSq = dX * dX + dZ * dZ;
+                    if (distanceSq < closestDistanceSq) {
+                        closestPoint = point;
+                        closestDistanceSq = distanceSq;
+                    }
+                }
+                final GatheredPoint<Void> point = closestPoint;
+                final long key = ((long) point.getLatticeX() << 32) | (point.getLatticeZ() & 0xFFFFFFFFL);
+                biomes[zi * size + xi] = cellBiomes.computeIfAbsent(key, k -> new ChunkBiomePointSampler(
+                        compiledDimension, noiseCache, 1, CELL_SEARCH_RADIUS, (int) Math.floor(point.getX()),
+                        (int) Math.floor(point.getZ())).getBiomeAt(point.getX(), point.getZ()));
+            }
+        }
+        return biomes;
+    }
+
+    public int getChunkWidth() {
+        return chunkWidth;
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(int chunkX, int chunkZ, LinkedBiomeWeightMap biomes);
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private final int minX;
+        private final int minZ;
+        // In chunks from the minimum, the end exclusive
+        private final int startX;
+        private final int startZ;
+        private final int endX;
+        private final int endZ;
+        private final ChunkConsumer consumer;
+
+        ChunkTask(int minX, int minZ, int startX, int startZ, int endX, int endZ, ChunkConsumer consumer) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.startX = startX;
+            this.startZ = startZ;
+            this.endX = endX;
+            this.endZ = endZ;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (endX - startX == 1 && endZ - startZ == 1) {
+                final int chunkX = minX + startX * chunkWidth;
+                final int chunkZ = minZ + startZ * chunkWidth;
+                consumer.accept(chunkX, chunkZ, generateChunk(chunkX, chunkZ));
+            } else if (endX - startX >= endZ - startZ) {
+                final int middle = (startX + endX) >>> 1;
+                invokeAll(new ChunkTask(minX, minZ, startX, startZ, middle, endZ, consumer),
+                        new ChunkTask(minX, minZ, middle, startZ, endX, endZ, consumer));
+            } else {
+                final int middle = (startZ + endZ) >>> 1;
+                invokeAll(new ChunkTask(minX, minZ, startX, startZ, endX, middle, consumer),
+                        new ChunkTask(minX, minZ, startX, middle, endX, endZ, consumer));
+            }
+        }
+    }
+
+}
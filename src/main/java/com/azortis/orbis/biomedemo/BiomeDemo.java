@@ -26,13 +26,26 @@ package com.azortis.orbis.biomedemo;
 
 import com.azortis.orbis.biomedemo.objects.*;
 import com.azortis.orbis.biomedemo.objects.Dimension;
-import com.azortis.orbis.biomedemo.point.ChunkBiomePointSampler;
+import com.azortis.orbis.biomedemo.point.BiomeLocator;
+import com.azortis.orbis.biomedemo.point.BiomePresenceIndex;
+import com.azortis.orbis.biomedemo.point.CompiledDimension;
+import com.azortis.orbis.biomedemo.point.FloatPrecisionValidator;
+import com.azortis.orbis.biomedemo.point.RadiusValidator;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public final class BiomeDemo {
 
@@ -40,73 +53,195 @@ public final class BiomeDemo {
     private static final int HEIGHT = 1440;
     private static final int CHUNK_WIDTH = 16;
 
+    // The search radius before it was derived from the blender, --validate-radii reports what it changes.
     private static final int SEARCH_RADIUS = 42;
     private static final int MIN_BLEND_RADIUS = 32;
     private static final double POINT_FREQUENCY = 0.04;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // Compile the config directories into a pack, instead of rendering.
+        if (args[0].equals("--compile")) {
+            File packFile = new File(args[1]);
+            DimensionPack pack = DimensionPack.fromConfig(new File(System.getProperty("user.dir")));
+            pack.write(packFile);
+            System.out.println("Compiled " + pack.getDimensions().size() + " dimensions, " + pack.getRegions().size() +
+                    " regions and " + pack.getBiomes().size() + " biomes into " + packFile);
+            return;
+        }
+
         long startTime = System.currentTimeMillis();
-        Registry.initialize();
-        Dimension dimension = Registry.getDimension(args[0]);
+        boolean validateFloat = false;
+        boolean verifyCompiled = false;
+        boolean validateRadii = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File packFile = null;
+        File renderFile = null;
+        File storeDirectory = null;
+        int servePort = -1;
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        String locateBiome = null;
+        int locateRadius = 0;
+        int minX = 0;
+        int minZ = 0;
+        int width = WIDTH;
+        int height = HEIGHT;
+        int scale = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--validate-float")) validateFloat = true;
+            if (args[i].equals("--verify-compiled")) verifyCompiled = true;
+            if (args[i].equals("--validate-radii")) validateRadii = true;
+            if (args[i].equals("--pack")) packFile = new File(args[++i]);
+            if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            if (args[i].equals("--render")) renderFile = new File(args[++i]);
+            if (args[i].equals("--pregenerate")) storeDirectory = new File(args[++i]);
+            if (args[i].equals("--origin")) {
+                minX = Integer.parseInt(args[++i]);
+                minZ = Integer.parseInt(args[++i]);
+            }
+            if (args[i].equals("--size")) {
+                width = Integer.parseInt(args[++i]);
+                height = Integer.parseInt(args[++i]);
+            }
+            if (args[i].equals("--scale")) scale = Integer.parseInt(args[++i]);
+            if (args[i].equals("--serve")) servePort = Integer.parseInt(args[++i]);
+            if (args[i].equals("--bind")) bindAddress = InetAddress.getByName(args[++i]);
+            if (args[i].equals("--locate")) {
+                locateBiome = args[++i];
+                locateRadius = Integer.parseInt(args[++i]);
+            }
+        }
+        if (packFile != null) {
+            Registry.initialize(packFile);
+        } else {
+            Registry.initialize();
+        }
+        RegistrySnapshot registry = Registry.getSnapshot();
+
+        // Serve tiles for browsing the dimension, only to this machine unless an address to bind to is given. The http
+        // threads keep running after main returns.
+        if (servePort >= 0) {
+            TileServer server = new TileServer(new InetSocketAddress(bindAddress, servePort), args[0], threads,
+                    256L << 20);
+            server.start();
+            System.out.println("Serving " + args[0] + " on http://" + server.getAddress().getHostString() + ":" +
+                    server.getAddress().getPort() + "/");
+            return;
+        }
+        Dimension dimension = registry.getDimension(args[0]);
+        CompiledDimension compiledDimension = CompiledDimension.compile(dimension);
+
+        // Check the generated layer selector against the interpreted ranges, instead of rendering.
+        if (verifyCompiled) {
+            System.out.println("Compiled selector mismatches: " + compiledDimension.verify());
+            return;
+        }
+
+        // Find the closest cell of a biome to the origin, instead of rendering.
+        if (locateBiome != null) {
+            Biome biome = registry.getBiome(locateBiome);
+            if (biome == null) throw new IllegalArgumentException("Biome " + locateBiome + " doesn't exist");
+            long startLocateTime = System.nanoTime();
+            BiomeLocator.Result result = new BiomeLocator(compiledDimension).locate(biome.getId(), minX, minZ,
+                    locateRadius, TimeUnit.SECONDS.toNanos(10));
+            System.out.println("Biome " + locateBiome + " " + result + " in " +
+                    (System.nanoTime() - startLocateTime) / 1000000 + " milliseconds");
+            return;
+        }
 
-        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
         ScatteredBiomeBlender biomeBlender = new ScatteredBiomeBlender(POINT_FREQUENCY, MIN_BLEND_RADIUS, CHUNK_WIDTH);
+        final int searchRadius = compiledDimension.getSearchRadius(biomeBlender.getBlendKernelRadius());
 
-        List<Long> chunkTimes = new ArrayList<>();
-        for (int zc = 0; zc < HEIGHT; zc += CHUNK_WIDTH) {
-            for (int xc = 0; xc < WIDTH; xc += CHUNK_WIDTH) {
-                long startChunkTime = System.nanoTime();
-                System.out.println("Calculating Chunk: x=" + xc + ", z=" + zc);
-                ChunkBiomePointSampler chunkBiomePointSampler = new ChunkBiomePointSampler(dimension, 1.0 / dimension.getCellZoom(), CHUNK_WIDTH, SEARCH_RADIUS, xc, zc);
-                LinkedBiomeWeightMap firstBiomeWeightMap = biomeBlender.getBlendForChunk(dimension.getSeed(), xc, zc, chunkBiomePointSampler::getBiomeAt);
-
-                for (int zi = 0; zi < CHUNK_WIDTH; zi++) {
-                    for (int xi = 0; xi < CHUNK_WIDTH; xi++) {
-                        int z = zc + zi;
-                        int x = xc + xi;
-
-                        double r, g, b;
-                        r = g = b = 0;
-
-                        /*double maxWeight = Double.NEGATIVE_INFINITY;
-                        for (LinkedBiomeWeightMap entry = firstBiomeWeightMap; entry != null; entry = entry.getNext()) {
-                            double weight = entry.getWeights()[zi * CHUNK_WIDTH + xi];
-                            if (weight > maxWeight) {
-                                maxWeight = weight;
-                                int biomeId = entry.getBiome();
-                                Biome biome = Registry.getBiome(biomeId);
-                                Color color = biome.getColor();
-                                r = color.getRed();
-                                g = color.getGreen();
-                                b = color.getBlue();
-                            }
-                        }*/
-
-                        for (LinkedBiomeWeightMap entry = firstBiomeWeightMap; entry != null; entry = entry.getNext()) {
-                            double weight = entry.getWeights()[zi * CHUNK_WIDTH + xi];
-                            int biomeId = entry.getBiome();
-                            Biome biome = Registry.getBiome(biomeId);
-                            Color color = biome.getColor();
-                            r += color.getRed() * weight;
-                            g += color.getGreen() * weight;
-                            b += color.getBlue() * weight;
-                        }
+        // Report how much single precision noise would change the outcome, instead of rendering.
+        if (validateFloat) {
+            FloatPrecisionValidator.Result result = FloatPrecisionValidator.validate(compiledDimension,
+                    1.0 / dimension.getCellZoom(), CHUNK_WIDTH, searchRadius, 0, 0, WIDTH, HEIGHT);
+            System.out.println("Float precision validation: " + result);
+            return;
+        }
+
+        // Report the derived radii and how they compare to the configured ones, instead of rendering.
+        if (validateRadii) {
+            System.out.println("Derived radii: search=" + searchRadius + ", cell=" + compiledDimension.getCellRadius() +
+                    " (configured " + dimension.getCellPointContributionRadius() + "), type=" +
+                    compiledDimension.getTypeRadius() + " (configured " + dimension.getTypeContributionRadius() +
+                    "), region=" + compiledDimension.getInitialRegionRadius() + " (configured " +
+                    dimension.getRegionContributionRadius() + ")");
+            System.out.println("Derived search radius: " + RadiusValidator.validate(dimension, biomeBlender,
+                    CHUNK_WIDTH, searchRadius, 0, 0, WIDTH, HEIGHT));
+            System.out.println("Search radius " + SEARCH_RADIUS + ": " + RadiusValidator.validate(dimension,
+                    biomeBlender, CHUNK_WIDTH, SEARCH_RADIUS, 0, 0, WIDTH, HEIGHT));
+            return;
+        }
+
+        AreaGenerator generator = new AreaGenerator(compiledDimension, biomeBlender, CHUNK_WIDTH, searchRadius);
+        MapRenderer renderer = new MapRenderer(generator, registry.getPalette());
+        ForkJoinPool pool = new ForkJoinPool(threads);
 
-                        int rgb = new Color((int) r, (int) g, (int) b).getRGB();
-                        image.setRGB(x, z, rgb);
+        // Write the chunks of the area to a region store, instead of rendering.
+        if (storeDirectory != null) {
+            long startStoreTime = System.nanoTime();
+            try (BiomeRegionStore store = new BiomeRegionStore(storeDirectory.toPath(), CHUNK_WIDTH,
+                    dimension.getSeed(), compiledDimension.getFingerprint())) {
+                generator.generate(pool, minX, minZ, width, height, (chunkX, chunkZ, biomes) -> {
+                    try {
+                        store.put(chunkX, chunkZ, biomes);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
                     }
-                }
-                long chunkTime = System.nanoTime() - startChunkTime;
-                System.out.println("Chunk took: " + chunkTime + "ns to calculate");
-                chunkTimes.add(chunkTime);
+                });
+            }
+            // Summarize the biomes of the area next to the chunks, adding to what earlier runs summarized for the same
+            // config.
+            File indexFile = new File(storeDirectory, "presence.bin");
+            BiomePresenceIndex presenceIndex = new BiomePresenceIndex(compiledDimension);
+            if (indexFile.exists() && !presenceIndex.load(indexFile)) {
+                System.out.println("Discarding the biome presence summaries of another config in " + indexFile);
+            }
+            presenceIndex.build(pool, minX, minZ, width, height);
+            presenceIndex.write(indexFile);
+            pool.shutdown();
+            System.out.println("Stored the chunks of " + width + "x" + height + " blocks in " + storeDirectory +
+                    " in " + (System.nanoTime() - startStoreTime) / 1000000 + " milliseconds");
+            return;
+        }
+
+        // Stream the map to a png, or raw rgb for any other extension, instead of showing it.
+        if (renderFile != null) {
+            long startRenderTime = System.nanoTime();
+            try (OutputStream out = new FileOutputStream(renderFile);
+                 MapRenderer.RowWriter writer = renderFile.getName().endsWith(".png") ?
+                         new PngWriter(out, width, height) : MapRenderer.rawRgbWriter(out, width)) {
+                renderer.render(pool, minX, minZ, width, height, scale, writer);
             }
+            pool.shutdown();
+            System.out.println("Rendered " + width + "x" + height + " pixels at scale " + scale + " to " +
+                    renderFile + " in " + (System.nanoTime() - startRenderTime) / 1000000 + " milliseconds");
+            return;
         }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int imageWidth = width;
+        long startGenerateTime = System.nanoTime();
+        renderer.render(pool, minX, minZ, width, height, scale, new MapRenderer.RowWriter() {
+            private int z;
+
+            @Override
+            public void writeRow(int[] rgb, int offset) {
+                image.setRGB(0, z++, imageWidth, 1, rgb, offset, imageWidth);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        long generateTime = System.nanoTime() - startGenerateTime;
+        pool.shutdown();
         long time = System.currentTimeMillis() - startTime;
         System.out.println("It took the algorithm " + time + "milliseconds to render the image!");
 
-        long totalChunkTime = chunkTimes.stream().mapToLong(aLong -> aLong).sum();
-        long avgChunkTime = totalChunkTime / chunkTimes.size();
-        System.out.println("With an average chunk time of: " + avgChunkTime + "nanoseconds!");
+        long chunks = (long) ((width + CHUNK_WIDTH - 1) / CHUNK_WIDTH) * ((height + CHUNK_WIDTH - 1) / CHUNK_WIDTH);
+        System.out.println("With an average of: " + generateTime / chunks + "nanoseconds per chunk on " + threads +
+                " threads!");
 
         JFrame frame = new JFrame();
         JLabel imageLabel = new JLabel();
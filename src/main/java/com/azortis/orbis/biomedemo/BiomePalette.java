@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+
+import java.util.Collection;
+
+/**
+ * Biomes and their colors in flat arrays indexed by biome id, so per pixel lookups neither box the id nor
+ * allocate a color. The arrays cover every id between the lowest and the highest, so ids may be at most
+ * {@link #MAX_ID_SPAN} apart.
+ */
+public final class BiomePalette {
+
+    public static final int MAX_ID_SPAN = 1 << 16;
+
+    private final int minId;
+    private final Biome[] biomes;
+    private final int[] rgb;
+
+    /**
+     * @throws IllegalArgumentException if the ids are more than {@link #MAX_ID_SPAN} apart.
+     */
+    public BiomePalette(Collection<Biome> biomes) {
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (Biome biome : biomes) {
+            minId = Math.min(minId, biome.getId());
+            maxId = Math.max(maxId, biome.getId());
+        }
+        if (biomes.isEmpty()) minId = maxId = 0;
+        this.minId = minId;
+
+        final long span = (long) maxId - minId + 1;
+        if (span > MAX_ID_SPAN) {
+            throw new IllegalArgumentException("Biome ids " + minId + " to " + maxId + " span more than " +
+                    MAX_ID_SPAN);
+        }
+        final int size = (int) span;
+        this.biomes = new Biome[size];
+        this.rgb = new int[size];
+        for (Biome biome : biomes) {
+            this.biomes[biome.getId() - minId] = biome;
+            this.rgb[biome.getId() - minId] = biome.getRgb();
+        }
+    }
+
+    public boolean contains(int id) {
+        long index = (long) id - minId;
+        return index >= 0 && index < biomes.length && biomes[(int) index] != null;
+    }
+
+    /**
+     * @return The biome with the id, or null if there is none.
+     */
+    public Biome getBiome(int id) {
+        return contains(id) ? biomes[id - minId] : null;
+    }
+
+    /**
+     * @return The color of the biome packed as 0xRRGGBB, with the alpha bits set like {@link java.awt.Color#getRGB()}.
+     * @throws IllegalArgumentException if there is no biome with the id, as for the other colors.
+     */
+    public int getRgb(int id) {
+        return rgb[getIndex(id)];
+    }
+
+    public int getRed(int id) {
+        return (rgb[getIndex(id)] >> 16) & 0xFF;
+    }
+
+    public int getGreen(int id) {
+        return (rgb[getIndex(id)] >> 8) & 0xFF;
+    }
+
+    public int getBlue(int id) {
+        return rgb[getIndex(id)] & 0xFF;
+    }
+
+    private int getIndex(int id) {
+        if (!contains(id)) throw new IllegalArgumentException("No biome with id " + id);
+        return id - minId;
+    }
+
+}
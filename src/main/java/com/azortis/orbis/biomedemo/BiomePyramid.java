@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Biomes of the closest cell point at every level of detail, in tiles of {@link #TILE_SIZE} by {@link #TILE_SIZE}
+ * samples. At level k samples are 2^k blocks apart, so a tile covers the four tiles below it in half the resolution.
+ * Nothing is blended, but a tile still gets dearer with every level while its samples share cell points. Once they
+ * are further apart than the cells every sample evaluates a cell point of its own, and from there on the cost of a
+ * tile stays about the same.
+ *
+ * Tiles are made when first asked for and kept up to a maximum, least recently used first out. The samples of a level
+ * are a subset of those below it, so a tile whose four children are cached is taken from them without sampling.
+ */
+public final class BiomePyramid {
+
+    public static final int TILE_SIZE = 64;
+
+    private final AreaGenerator generator;
+    private final int maxLevel;
+    private final int maxCachedTiles;
+
+    // Guarded by itself
+    private final LinkedHashMap<TileKey, PalettedBiomeContainer> tiles;
+
+    public BiomePyramid(AreaGenerator generator, int maxLevel, int maxCachedTiles) {
+        if (maxLevel < 0 || maxLevel > 20) throw new IllegalArgumentException("Max level " + maxLevel);
+        this.generator = generator;
+        this.maxLevel = maxLevel;
+        this.maxCachedTiles = maxCachedTiles;
+        this.tiles = new LinkedHashMap<TileKey, PalettedBiomeContainer>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, PalettedBiomeContainer> eldest) {
+                return size() > BiomePyramid.this.maxCachedTiles;
+            }
+        };
+    }
+
+    /**
+     * @return The biome of the sample at the level that the block is in, whose block is at the minimum corner.
+     */
+    public int getBiome(int level, int x, int z) {
+        final int sampleX = x >> level;
+        final int sampleZ = z >> level;
+        return getTile(level, Math.floorDiv(sampleX, TILE_SIZE), Math.floorDiv(sampleZ, TILE_SIZE))
+                .get(Math.floorMod(sampleX, TILE_SIZE), Math.floorMod(sampleZ, TILE_SIZE));
+    }
+
+    /**
+     * Safe to call from multiple threads, a tile asked for by several at once may be sampled more than once.
+     *
+     * @return The samples of the tile, from block (tileX, tileZ) * {@link #TILE_SIZE} * 2^level.
+     */
+    public PalettedBiomeContainer getTile(int level, int tileX, int tileZ) {
+        if (level < 0 || level > maxLevel) throw new IllegalArgumentException("Level " + level + " of " + maxLevel);
+        final TileKey key = new TileKey(level, tileX, tileZ);
+        PalettedBiomeContainer tile = getCached(key);
+        if (tile != null) return tile;
+
+        tile = level > 0 ? fromChildren(level, tileX, tileZ) : null;
+        if (tile == null) tile = sample(level, tileX, tileZ);
+        synchronized (tiles) {
+            PalettedBiomeContainer existing = tiles.putIfAbsent(key, tile);
+            return existing != null ? existing : tile;
+        }
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    private PalettedBiomeContainer getCached(TileKey key) {
+        synchronized (tiles) {
+            return tiles.get(key);
+        }
+    }
+
+    private PalettedBiomeContainer sample(int level, int tileX, int tileZ) {
+        final int step = 1 << level;
+        final long minX = (long) tileX * TILE_SIZE * step;
+        final long minZ = (long) tileZ * TILE_SIZE * step;
+        if (minX < Integer.MIN_VALUE || minX + (long) TILE_SIZE * step > Integer.MAX_VALUE ||
+                minZ < Integer.MIN_VALUE || minZ + (long) TILE_SIZE * step > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Tile " + tileX + ", " + tileZ + " at level " + level +
+                    " is out of range");
+        // Sample in parts of a bounded width, a single sampler over a large area compares every pair of its points.
+        final int partSize = Math.max(1, Math.min(TILE_SIZE, MapRenderer.TILE_BLOCKS / step));
+        int[] biomes = new int[TILE_SIZE * TILE_SIZE];
+        for (int partZ = 0; partZ < TILE_SIZE; partZ += partSize) {
+            for (int partX = 0; partX < TILE_SIZE; partX += partSize) {
+                int[] part = generator.sampleArea((int) minX + partX * step, (int) minZ + partZ * step, partSize,
+                        step);
+                for (int zi = 0; zi < partSize; zi++) {
+                    System.arraycopy(part, zi * partSize, biomes, (partZ + zi) * TILE_SIZE + partX, partSize);
+                }
+            }
+        }
+        return PalettedBiomeContainer.of(biomes, TILE_SIZE);
+    }
+
+    // Every other sample of the four children, or null if any of them isn't cached.
+    private PalettedBiomeContainer fromChildren(int level, int tileX, int tileZ) {
+        PalettedBiomeContainer[] children = new PalettedBiomeContainer[4];
+        for (int i = 0; i < 4; i++) {
+            children[i] = getCached(new TileKey(level - 1, tileX * 2 + (i & 1), tileZ * 2 + (i >> 1)));
+            if (children[i] == null) return null;
+        }
+        final int half = TILE_SIZE / 2;
+        int[] childBiomes = new int[TILE_SIZE * TILE_SIZE];
+        int[] biomes = new int[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < 4; i++) {
+            children[i].decode(childBiomes);
+            final int offsetX = (i & 1) * half;
+            final int offsetZ = (i >> 1) * half;
+            for (int zi = 0; zi < half; zi++) {
+                for (int xi = 0; xi < half; xi++) {
+                    biomes[(offsetZ + zi) * TILE_SIZE + offsetX + xi] = childBiomes[zi * 2 * TILE_SIZE + xi * 2];
+                }
+            }
+        }
+        return PalettedBiomeContainer.of(biomes, TILE_SIZE);
+    }
+
+    private static final class TileKey {
+        final int level;
+        final int tileX;
+        final int tileZ;
+
+        TileKey(int level, int tileX, int tileZ) {
+            this.level = level;
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+            TileKey other = (TileKey) o;
+            return level == other.level && tileX == other.tileX && tileZ == other.tileZ;
+        }
+
+        @Override
+        public int hashCode() {
+            return (level * 31 + tileX) * 31 + tileZ;
+        }
+    }
+
+}
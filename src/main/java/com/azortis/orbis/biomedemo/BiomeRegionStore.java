@@ -0,0 +1,343 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the blended biomes of chunks on disk, in files of {@link #REGION_CHUNKS} by {@link #REGION_CHUNKS} chunks that
+ * are memory mapped for reading. A file starts with a table of where the record of each chunk is, so a lookup reads
+ * one table entry and the record it points to, without parsing anything else.
+ *
+ * A record holds the ids of the biomes in the chunk, the index of the dominant biome of every column and the weights
+ * of every biome quantized to 16 bits. Records are only ever appended, the table entry is written as a single long
+ * after the record is forced to disk, so a crash leaves either the old or the new record in the table. Writers append
+ * in parallel and share the forces, the entries of every record appended while one force ran are published by the
+ * next. Records also carry a checksum that is checked on their first read, one that doesn't match reads as missing.
+ * Rewritten chunks leave their old record behind.
+ *
+ * A new file only appears once its header is complete, and files written for another config are refused.
+ */
+public final class BiomeRegionStore implements AutoCloseable {
+
+    public static final int REGION_CHUNKS = 32;
+
+    private static final int MAGIC = 0x4F425253; // OBRS
+    private static final int VERSION = 2;
+    private static final int TABLE_OFFSET = 32;
+    private static final int HEADER_SIZE = TABLE_OFFSET + REGION_CHUNKS * REGION_CHUNKS * Long.BYTES;
+    private static final int LENGTH_BITS = 24;
+    private static final int MAX_RECORD_LENGTH = (1 << LENGTH_BITS) - 1;
+    private static final double WEIGHT_SCALE = 0xFFFF;
+
+    private final Path directory;
+    private final int chunkWidth;
+    private final long seed;
+    private final long fingerprint;
+    private final ConcurrentMap<Long, RegionFile> regions = new ConcurrentHashMap<>();
+    // Regions without a file, until a chunk is written to them
+    private final Set<Long> missingRegions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param seed        The seed of the dimension.
+     * @param fingerprint The fingerprint of the config the biomes are generated from, see
+     *                    {@link com.azortis.orbis.biomedemo.point.CompiledDimension#getFingerprint()}. Files written
+     *                    for another seed, fingerprint or chunk width are refused.
+     */
+    public BiomeRegionStore(Path directory, int chunkWidth, long seed, long fingerprint) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.chunkWidth = chunkWidth;
+        this.seed = seed;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Stores the biomes of the chunk with its base at the position, safe to call from multiple threads.
+     */
+    public void put(int chunkX, int chunkZ, LinkedBiomeWeightMap biomes) throws IOException {
+        getRegion(chunkX, chunkZ, true).write(getTableIndex(chunkX, chunkZ), encode(biomes));
+    }
+
+    /**
+     * @return The stored biomes of the chunk with its base at the position, with the weights as they were quantized,
+     * or null if it isn't stored.
+     */
+    public LinkedBiomeWeightMap get(int chunkX, int chunkZ) throws IOException {
+        ByteBuffer record = getRecord(chunkX, chunkZ);
+        if (record == null) return null;
+        final int columns = chunkWidth * chunkWidth;
+        final int biomeCount = record.getInt(4);
+        final int weightsOffset = 8 + biomeCount * Integer.BYTES + columns;
+        LinkedBiomeWeightMap biomes = null;
+        for (int i = biomeCount - 1; i >= 0; i--) {
+            biomes = new LinkedBiomeWeightMap(record.getInt(8 + i * Integer.BYTES), columns, biomes);
+            double[] weights = biomes.getWeights();
+            for (int column = 0; column < columns; column++) {
+                weights[column] = (record.getShort(weightsOffset + (i * columns + column) * Short.BYTES) & 0xFFFF) /
+                        WEIGHT_SCALE;
+            }
+        }
+        return biomes;
+    }
+
+    /**
+     * @return The biome with the largest weight in the column, or -1 if its chunk isn't stored.
+     */
+    public int getDominantBiome(int x, int z) throws IOException {
+        final int chunkX = Math.floorDiv(x, chunkWidth) * chunkWidth;
+        final int chunkZ = Math.floorDiv(z, chunkWidth) * chunkWidth;
+        ByteBuffer record = getRecord(chunkX, chunkZ);
+        if (record == null) return -1;
+        final int biomeCount = record.getInt(4);
+        final int column = (z - chunkZ) * chunkWidth + (x - chunkX);
+        final int index = record.get(8 + biomeCount * Integer.BYTES + column) & 0xFF;
+        return record.getInt(8 + index * Integer.BYTES);
+    }
+
+    public boolean contains(int chunkX, int chunkZ) throws IOException {
+        return getRecord(chunkX, chunkZ) != null;
+    }
+
+    public int getChunkWidth() {
+        return chunkWidth;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (regions) {
+            for (RegionFile region : regions.values()) {
+                region.channel.close();
+            }
+            regions.clear();
+            missingRegions.clear();
+        }
+    }
+
+    private ByteBuffer getRecord(int chunkX, int chunkZ) throws IOException {
+        RegionFile region = getRegion(chunkX, chunkZ, false);
+        return region == null ? null : region.read(getTableIndex(chunkX, chunkZ));
+    }
+
+    private int getTableIndex(int chunkX, int chunkZ) {
+        return Math.floorMod(Math.floorDiv(chunkZ, chunkWidth), REGION_CHUNKS) * REGION_CHUNKS +
+                Math.floorMod(Math.floorDiv(chunkX, chunkWidth), REGION_CHUNKS);
+    }
+
+    private RegionFile getRegion(int chunkX, int chunkZ, boolean create) throws IOException {
+        final int regionX = Math.floorDiv(Math.floorDiv(chunkX, chunkWidth), REGION_CHUNKS);
+        final int regionZ = Math.floorDiv(Math.floorDiv(chunkZ, chunkWidth), REGION_CHUNKS);
+        final long key = ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+        RegionFile region = regions.get(key);
+        if (region != null || (!create && missingRegions.contains(key))) return region;
+        synchronized (regions) {
+            region = regions.get(key);
+            if (region != null) return region;
+            Path path = directory.resolve("r." + regionX + "." + regionZ + ".bin");
+            if (!create && !Files.exists(path)) {
+                missingRegions.add(key);
+                return null;
+            }
+            region = new RegionFile(path);
+            regions.put(key, region);
+            missingRegions.remove(key);
+            return region;
+        }
+    }
+
+    private ByteBuffer encode(LinkedBiomeWeightMap biomes) {
+        final int columns = chunkWidth * chunkWidth;
+        int biomeCount = 0;
+        for (LinkedBiomeWeightMap entry = biomes; entry != null; entry = entry.getNext()) biomeCount++;
+        if (biomeCount > 0xFF) throw new IllegalArgumentException("Can't store " + biomeCount + " biomes in a chunk");
+        final int length = 8 + biomeCount * Integer.BYTES + columns + biomeCount * columns * Short.BYTES;
+        if (length > MAX_RECORD_LENGTH) throw new IllegalArgumentException("Chunk record of " + length + " bytes");
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        final int dominantOffset = 8 + biomeCount * Integer.BYTES;
+        final int weightsOffset = dominantOffset + columns;
+        record.putInt(4, biomeCount);
+        double[] maxWeights = new double[columns];
+        int i = 0;
+        for (LinkedBiomeWeightMap entry = biomes; entry != null; entry = entry.getNext(), i++) {
+            record.putInt(8 + i * Integer.BYTES, entry.getBiome());
+            double[] weights = entry.getWeights();
+            for (int column = 0; column < columns; column++) {
+                record.putShort(weightsOffset + (i * columns + column) * Short.BYTES,
+                        (short) Math.round(weights[column] * WEIGHT_SCALE));
+                if (i == 0 || weights[column] > maxWeights[column]) {
+                    maxWeights[column] = weights[column];
+                    record.put(dominantOffset + column, (byte) i);
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record;
+    }
+
+    private final class RegionFile {
+        private final FileChannel channel;
+        private final MappedByteBuffer table;
+        // The table entries whose record matched its checksum, so it's only checked on the first read.
+        private final long[] verified = new long[REGION_CHUNKS * REGION_CHUNKS];
+        // Remapped whenever a record is read that lies past its end
+        private volatile ByteBuffer mapped;
+
+        // Guarded by this, where the next record goes
+        private long end;
+        // Guarded by pending, the table entries of appended records waiting for a force, as index and entry
+        private final List<long[]> pending = new ArrayList<>();
+        private long appended;
+        // Guarded by commitLock, how many appended records have their entry published
+        private final Object commitLock = new Object();
+        private long committed;
+
+        RegionFile(Path path) throws IOException {
+            if (!Files.exists(path)) create(path);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < HEADER_SIZE) throw new IOException("Region file " + path + " is truncated");
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION)
+                    throw new IOException("Not a biome region file: " + path);
+                if (table.getInt(8) != chunkWidth || table.getLong(16) != seed || table.getLong(24) != fingerprint)
+                    throw new IOException("Region file " + path + " was written for chunk width " +
+                            table.getInt(8) + ", seed " + table.getLong(16) + " and config " +
+                            Long.toHexString(table.getLong(24)));
+                end = channel.size();
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        // The header is written next to the file and moved in place, so a crash never leaves a partial one.
+        private void create(Path path) throws IOException {
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(chunkWidth).putInt(0).putLong(seed).putLong(fingerprint);
+                header.rewind();
+                while (header.hasRemaining()) temp.write(header, header.position());
+                temp.force(true);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        ByteBuffer read(int index) throws IOException {
+            final long entry = table.getLong(TABLE_OFFSET + index * Long.BYTES);
+            if (entry == 0) return null;
+            final long offset = entry >>> LENGTH_BITS;
+            final int length = (int) (entry & MAX_RECORD_LENGTH);
+            ByteBuffer mapped = this.mapped;
+            if (offset + length > mapped.capacity()) {
+                synchronized (this) {
+                    mapped = this.mapped;
+                    if (offset + length > mapped.capacity()) {
+                        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        this.mapped = mapped;
+                    }
+                }
+            }
+            ByteBuffer record = mapped.duplicate();
+            record.position((int) offset).limit((int) (offset + length));
+            record = record.slice();
+            if (verified[index] == entry) return record;
+            CRC32 crc = new CRC32();
+            crc.update(record.duplicate().position(4));
+            if ((int) crc.getValue() != record.getInt(0)) return null;
+            verified[index] = entry;
+            return record;
+        }
+
+        void write(int index, ByteBuffer record) throws IOException {
+            final long offset;
+            synchronized (this) {
+                offset = end;
+                if (offset > Integer.MAX_VALUE - record.capacity())
+                    throw new IOException("Region file is full");
+                end += record.capacity();
+            }
+            writeFully(record, offset);
+            final long sequence;
+            synchronized (pending) {
+                pending.add(new long[]{index, offset << LENGTH_BITS | record.capacity()});
+                sequence = ++appended;
+            }
+            commit(sequence);
+        }
+
+        // Whoever gets the lock first forces every record appended so far, the others find theirs published.
+        private void commit(long sequence) throws IOException {
+            synchronized (commitLock) {
+                if (committed >= sequence) return;
+                final List<long[]> batch;
+                final long last;
+                synchronized (pending) {
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                    last = appended;
+                }
+                try {
+                    channel.force(false);
+                    for (long[] entry : batch) table.putLong(TABLE_OFFSET + (int) entry[0] * Long.BYTES, entry[1]);
+                    table.force();
+                } catch (IOException | RuntimeException ex) {
+                    // Left for the next commit to retry, no entry counts as published without a force.
+                    synchronized (pending) {
+                        pending.addAll(0, batch);
+                    }
+                    throw ex;
+                }
+                committed = last;
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer, long position) throws IOException {
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the blended biomes of chunks as futures, generated by an {@link AreaGenerator} on a fixed amount of
+ * threads. Callers that block on the future only park, so on a runtime with virtual threads any amount of them can
+ * wait while the generation is bounded by the pool.
+ *
+ * Requests for a chunk that is already queued or being generated share that generation, each caller still gets its
+ * own future to cancel. Once every caller of a chunk cancelled before it started, it is skipped. The futures of a
+ * chunk all complete with the same weight map, which must not be modified.
+ *
+ * Chunks are generated by a {@link ChunkScheduler}, requests can name the observer they are for so the chunks
+ * closest to it come first, and are cancelled once it moved too far away. A chunk that was also requested without an
+ * observer is never cancelled that way.
+ */
+public final class BiomeService implements AutoCloseable {
+
+    private final AreaGenerator generator;
+    private final ChunkScheduler scheduler;
+    private final ConcurrentMap<Long, Request> requests = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong skippedChunks = new AtomicLong();
+    private final AtomicLong cancelledChunks = new AtomicLong();
+
+    public BiomeService(AreaGenerator generator, int threads) {
+        this(generator, new ChunkScheduler(threads, generator.getChunkWidth(), Double.POSITIVE_INFINITY,
+                ChunkScheduler.DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * @param scheduler Closed together with the service.
+     */
+    public BiomeService(AreaGenerator generator, ChunkScheduler scheduler) {
+        this.generator = generator;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return The biomes of the chunk with its base at the position, cancelling it only withdraws this caller.
+     */
+    public CompletableFuture<LinkedBiomeWeightMap> getChunk(int chunkX, int chunkZ) {
+        return getChunk(chunkX, chunkZ, null);
+    }
+
+    /**
+     * @param observer The observer of the scheduler the chunk is for, or null to only order it by the nearest one.
+     * @return The biomes of the chunk with its base at the position, cancelling it only withdraws this caller.
+     */
+    public CompletableFuture<LinkedBiomeWeightMap> getChunk(int chunkX, int chunkZ,
+                                                           ChunkScheduler.Observer observer) {
+        final long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        while (true) {
+            Request request = requests.get(key);
+            if (request == null) {
+                Request created = new Request(key, chunkX, chunkZ);
+                request = requests.putIfAbsent(key, created);
+                if (request == null) {
+                    request = created;
+                    CompletableFuture<LinkedBiomeWeightMap> caller = request.attach(observer);
+                    try {
+                        scheduler.schedule(request);
+                    } catch (IllegalStateException ex) {
+                        requests.remove(key, request);
+                        request.result.completeExceptionally(ex);
+                    }
+                    return caller;
+                }
+            }
+            CompletableFuture<LinkedBiomeWeightMap> caller = request.attach(observer);
+            // Attaching fails if the last caller withdrew in the meantime, the next request starts over.
+            if (caller != null) {
+                coalescedRequests.incrementAndGet();
+                if (observer != null) scheduler.reprioritize();
+                return caller;
+            }
+        }
+    }
+
+    /**
+     * @return How many requests shared the generation of an earlier request.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    /**
+     * @return How many chunks were not generated because all their callers cancelled.
+     */
+    public long getSkippedChunks() {
+        return skippedChunks.get();
+    }
+
+    /**
+     * @return How many chunks the scheduler cancelled because their observers went away.
+     */
+    public long getCancelledChunks() {
+        return cancelledChunks.get();
+    }
+
+    /**
+     * Stops the threads, the futures of chunks that weren't generated yet complete exceptionally.
+     */
+    @Override
+    public void close() {
+        for (Request request : requests.values()) {
+            request.result.completeExceptionally(new CancellationException("Biome service closed"));
+        }
+        requests.clear();
+        scheduler.close();
+    }
+
+    private final class Request implements ChunkScheduler.Job {
+        private final long key;
+        private final int chunkX;
+        private final int chunkZ;
+        private final CompletableFuture<LinkedBiomeWeightMap> result = new CompletableFuture<>();
+        private final Collection<ChunkScheduler.Observer> observers = ChunkScheduler.newObserverSet();
+
+        // Guarded by this
+        private int callers;
+        private boolean started;
+        private boolean withdrawn;
+        private final Map<ChunkScheduler.Observer, Integer> observerCallers = new HashMap<>();
+        // Callers without an observer, the scheduler leaves the request alone while there are any
+        private volatile int unobservedCallers;
+
+        Request(long key, int chunkX, int chunkZ) {
+            this.key = key;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        synchronized CompletableFuture<LinkedBiomeWeightMap> attach(ChunkScheduler.Observer observer) {
+            if (withdrawn) return null;
+            callers++;
+            if (observer != null) {
+                observerCallers.merge(observer, 1, Integer::sum);
+                observers.add(observer);
+            } else {
+                unobservedCallers++;
+            }
+            CompletableFuture<LinkedBiomeWeightMap> caller = new CompletableFuture<>();
+            result.whenComplete((biomes, ex) -> {
+                if (ex != null) {
+                    caller.completeExceptionally(ex);
+                } else {
+                    caller.complete(biomes);
+                }
+            });
+            caller.whenComplete((biomes, ex) -> {
+                if (caller.isCancelled()) detach(observer);
+            });
+            return caller;
+        }
+
+        private void detach(ChunkScheduler.Observer observer) {
+            synchronized (this) {
+                if (observer == null) {
+                    unobservedCallers--;
+                } else if (observerCallers.merge(observer, -1, Integer::sum) == 0) {
+                    observerCallers.remove(observer);
+                    observers.remove(observer);
+                }
+                if (--callers > 0 || started) return;
+                withdrawn = true;
+            }
+            requests.remove(key, this);
+            result.cancel(false);
+        }
+
+        @Override
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        @Override
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        @Override
+        public Collection<ChunkScheduler.Observer> getObservers() {
+            return observers;
+        }
+
+        @Override
+        public boolean isCancellable() {
+            return unobservedCallers == 0;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (started || withdrawn) return;
+                // A caller without an observer joined after the scheduler took it out of its queue.
+                if (unobservedCallers > 0) {
+                    try {
+                        scheduler.schedule(this);
+                        return;
+                    } catch (IllegalStateException ex) {
+                        // The scheduler is closing, there's nothing left to run it.
+                    }
+                }
+                withdrawn = true;
+            }
+            requests.remove(key, this);
+            if (result.completeExceptionally(new CancellationException("No observer near the chunk"))) {
+                cancelledChunks.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (withdrawn) {
+                    skippedChunks.incrementAndGet();
+                    return;
+                }
+                started = true;
+            }
+            try {
+                result.complete(generator.generateChunk(chunkX, chunkZ));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            } finally {
+                requests.remove(key, this);
+            }
+        }
+    }
+
+}
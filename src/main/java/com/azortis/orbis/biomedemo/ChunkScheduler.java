@@ -0,0 +1,303 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs chunk jobs on a fixed amount of threads, closest to an observer first. A job is ordered by the distance of
+ * its chunk to the nearest observer interested in it, or to the nearest observer at all if nobody registered
+ * interest, and jobs without any observer run in the order they were scheduled.
+ *
+ * Observers moving only mark the order as stale, it's recomputed once the next thread takes a job. At that point
+ * jobs whose observers are all further away than the cancel distance, or removed, are cancelled. A thread takes the
+ * first job together with the jobs of the chunks right next to it, so they are generated after each other on
+ * the same thread and find the noise that their neighbours evaluated in its caches.
+ */
+public final class ChunkScheduler implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 4;
+
+    private final int chunkWidth;
+    private final double cancelDistanceSq;
+    private final int maxBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Set<Observer> observers = new HashSet<>();
+    private PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private long sequence;
+    private boolean stale;
+    private boolean closed;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * @param cancelDistance How far from all its observers a job is cancelled, infinite to never cancel them.
+     * @param maxBatchSize   How many neighbouring jobs a thread takes at once, 1 to take them one by one.
+     */
+    public ChunkScheduler(int threadCount, int chunkWidth, double cancelDistance, int maxBatchSize) {
+        this.chunkWidth = chunkWidth;
+        this.cancelDistanceSq = cancelDistance * cancelDistance;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        final AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(this::work, "Chunk Scheduler " + count.incrementAndGet());
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+    }
+
+    public Observer addObserver(double x, double z) {
+        lock.lock();
+        try {
+            Observer observer = new Observer(x, z);
+            observers.add(observer);
+            stale = true;
+            return observer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void schedule(Job job) {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Chunk scheduler closed");
+            Entry entry = new Entry(job, sequence++);
+            entry.distanceSq = getDistanceSq(job);
+            queue.add(entry);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the order as stale, for when the observers of a job changed.
+     */
+    void reprioritize() {
+        lock.lock();
+        try {
+            stale = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Entry> cancelled;
+        lock.lock();
+        try {
+            closed = true;
+            cancelled = new ArrayList<>(queue);
+            queue.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        threads.forEach(Thread::interrupt);
+        for (Entry entry : cancelled) entry.job.cancel();
+    }
+
+    private void work() {
+        List<Job> batch = new ArrayList<>(maxBatchSize);
+        List<Job> cancelled = new ArrayList<>();
+        while (true) {
+            boolean exit = false;
+            lock.lock();
+            try {
+                while (!closed && stale) cancelled.addAll(reorder());
+                if (closed) {
+                    exit = true;
+                } else if (!queue.isEmpty()) {
+                    takeBatch(batch);
+                } else if (cancelled.isEmpty()) {
+                    notEmpty.await();
+                }
+            } catch (InterruptedException ex) {
+                exit = true;
+            } finally {
+                lock.unlock();
+            }
+            // Jobs complete their callers on cancellation, that shouldn't happen while holding the lock. They already
+            // left the queue, so they are delivered before waiting or stopping.
+            for (Job job : cancelled) job.cancel();
+            cancelled.clear();
+            if (exit) return;
+            for (Job job : batch) job.run();
+            batch.clear();
+        }
+    }
+
+    private void takeBatch(List<Job> batch) {
+        final Job first = queue.poll().job;
+        batch.add(first);
+        for (Iterator<Entry> iterator = queue.iterator(); iterator.hasNext() && batch.size() < maxBatchSize; ) {
+            Job job = iterator.next().job;
+            if (Math.abs(job.getChunkX() - first.getChunkX()) <= chunkWidth &&
+                    Math.abs(job.getChunkZ() - first.getChunkZ()) <= chunkWidth) {
+                iterator.remove();
+                batch.add(job);
+            }
+        }
+    }
+
+    // Recomputes every distance and takes out the jobs nobody near is interested in any more.
+    private List<Job> reorder() {
+        stale = false;
+        List<Job> cancelled = new ArrayList<>();
+        PriorityQueue<Entry> reordered = new PriorityQueue<>(Math.max(1, queue.size()));
+        for (Entry entry : queue) {
+            entry.distanceSq = getDistanceSq(entry.job);
+            if (!entry.job.getObservers().isEmpty() && entry.job.isCancellable() &&
+                    (entry.distanceSq > cancelDistanceSq || entry.distanceSq == Double.POSITIVE_INFINITY)) {
+                cancelled.add(entry.job);
+            } else {
+                reordered.add(entry);
+            }
+        }
+        queue = reordered;
+        return cancelled;
+    }
+
+    private double getDistanceSq(Job job) {
+        final double centerX = job.getChunkX() + chunkWidth / 2.0d;
+        final double centerZ = job.getChunkZ() + chunkWidth / 2.0d;
+        Collection<Observer> interested = job.getObservers();
+        if (interested.isEmpty()) {
+            // Nobody asked for it specifically, it's only for whoever happens to be nearest.
+            double distanceSq = Entry.UNOBSERVED;
+            for (Observer observer : observers) {
+                distanceSq = Math.min(distanceSq, observer.getDistanceSq(centerX, centerZ));
+            }
+            return distanceSq;
+        }
+        double distanceSq = Double.POSITIVE_INFINITY;
+        for (Observer observer : interested) {
+            if (!observer.removed) distanceSq = Math.min(distanceSq, observer.getDistanceSq(centerX, centerZ));
+        }
+        return distanceSq;
+    }
+
+    /**
+     * A position chunks are generated around, like a player.
+     */
+    public final class Observer {
+        // Guarded by the lock of the scheduler
+        private double x;
+        private double z;
+        private boolean removed;
+
+        private Observer(double x, double z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        public void move(double x, double z) {
+            lock.lock();
+            try {
+                this.x = x;
+                this.z = z;
+                stale = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Cancels the jobs only this observer was interested in.
+         */
+        public void remove() {
+            lock.lock();
+            try {
+                removed = true;
+                observers.remove(this);
+                stale = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double getDistanceSq(double x, double z) {
+            final double dX = this.x - x;
+            final double dZ = this.z - z;
+            return dX * dX + dZ * dZ;
+        }
+    }
+
+    interface Job extends Runnable {
+        int getChunkX();
+
+        int getChunkZ();
+
+        /**
+         * @return The observers interested in the chunk, safe to read while they are added.
+         */
+        Collection<Observer> getObservers();
+
+        /**
+         * @return Whether the job may be cancelled once its observers are gone, false while it is also wanted
+         * regardless of any observer.
+         */
+        boolean isCancellable();
+
+        // Called instead of running, when no interested observer is near any more. A job that has become wanted
+        // regardless of observers in the meantime schedules itself again.
+        void cancel();
+    }
+
+    static Collection<Observer> newObserverSet() {
+        return new CopyOnWriteArraySet<>();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        // Ordered after every observed job, but before the ones that are too far
+        static final double UNOBSERVED = Double.MAX_VALUE;
+
+        final Job job;
+        final long sequence;
+        double distanceSq;
+
+        Entry(Job job, long sequence) {
+            this.job = job;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int compare = Double.compare(distanceSq, other.distanceSq);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+import com.azortis.orbis.biomedemo.objects.layer.Context;
+import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.point.Ticks;
+
+import java.util.*;
+
+/**
+ * Collects every problem in a config tree, instead of stopping at the first one, so a broken config can be fixed
+ * in one go. Ranges are checked per dimension, since the precision decides how far apart neighbouring ranges
+ * may be.
+ */
+final class ConfigValidator {
+
+    private static final String[] TYPES = {"land", "shore", "sea"};
+    private static final double EPSILON = 1e-9;
+
+    private final DimensionPack pack;
+    private final List<String> problems = new ArrayList<>();
+
+    private final Map<String, Region> regionMap = new HashMap<>();
+    private final Set<String> biomeNames = new HashSet<>();
+
+    ConfigValidator(DimensionPack pack) {
+        this.pack = pack;
+    }
+
+    List<String> validate() {
+        problems.addAll(pack.getParseProblems());
+        checkNames();
+        for (Dimension dimension : pack.getDimensions()) {
+            checkDimension(dimension);
+        }
+        for (Region region : pack.getRegions()) {
+            checkRegion(region);
+        }
+        checkReachable();
+        return problems;
+    }
+
+    private void checkNames() {
+        Set<Integer> biomeIds = new HashSet<>();
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        for (Biome biome : pack.getBiomes()) {
+            minId = Math.min(minId, biome.getId());
+            maxId = Math.max(maxId, biome.getId());
+            if (biome.getName() == null) {
+                problems.add("Biome " + biome.getId() + " has no name");
+            } else if (!biomeNames.add(biome.getName())) {
+                problems.add("Duplicate biome " + biome.getName());
+            }
+            if (!biomeIds.add(biome.getId())) problems.add("Biome " + biome.getName() + " reuses id " + biome.getId());
+        }
+        // The palette has an entry for every id in between
+        if (!biomeIds.isEmpty() && (long) maxId - minId + 1 > BiomePalette.MAX_ID_SPAN) {
+            problems.add("Biome ids " + minId + " to " + maxId + " span more than " + BiomePalette.MAX_ID_SPAN);
+        }
+        for (Region region : pack.getRegions()) {
+            if (region.getName() == null) {
+                problems.add("Region without a name");
+            } else if (regionMap.putIfAbsent(region.getName(), region) != null) {
+                problems.add("Duplicate region " + region.getName());
+            }
+        }
+        Set<String> dimensionNames = new HashSet<>();
+        for (Dimension dimension : pack.getDimensions()) {
+            if (dimension.getName() == null) {
+                problems.add("Dimension without a name");
+            } else if (!dimensionNames.add(dimension.getName())) {
+                problems.add("Duplicate dimension " + dimension.getName());
+            }
+        }
+    }
+
+    private void checkDimension(Dimension dimension) {
+        String owner = "Dimension " + dimension.getName();
+        if (dimension.getPrecision() <= 0) {
+            problems.add(owner + " has no precision");
+            return;
+        }
+        // Noise is compared in whole steps of the precision, see Ticks
+        if (dimension.getPrecision() != Math.rint(dimension.getPrecision()) ||
+                dimension.getPrecision() > Ticks.MAX_PRECISION) {
+            problems.add(owner + " has a precision that isn't a whole number up to " + (long) Ticks.MAX_PRECISION);
+        }
+        if (dimension.getRegionZoom() <= 0 || dimension.getTypeZoom() <= 0 || dimension.getCellZoom() <= 0) {
+            problems.add(owner + " has a zoom below 1");
+        }
+
+        // Only the regions below the dimension are generated with its radii and precision
+        Collection<Region> reachable = getReachableRegions(dimension.getRegions() == null ?
+                Collections.emptyList() : dimension.getRegions());
+
+        // Points are only gathered up to the cell point radius, anything contributing further would miss points
+        int cellRadius = dimension.getCellPointContributionRadius();
+        if (dimension.getTypeContributionRadius() > cellRadius) {
+            problems.add(owner + " has a type contribution radius above its cell point contribution radius");
+        }
+        if (dimension.getRegionContributionRadius() > cellRadius) {
+            problems.add(owner + " has a region contribution radius above its cell point contribution radius");
+        }
+        for (Region region : reachable) {
+            if (region.getContributionRadius() > cellRadius) {
+                problems.add("Region " + region.getName() + " has a contribution radius above the cell point " +
+                        "contribution radius of " + owner);
+            }
+        }
+
+        double step = 1.0 / dimension.getPrecision();
+        List<Range> typeRanges = new ArrayList<>();
+        typeRanges.add(new Range("land", dimension.getLandMin(), dimension.getLandMax()));
+        typeRanges.add(new Range("shore", dimension.getShoreMin(), dimension.getShoreMax()));
+        typeRanges.add(new Range("sea", dimension.getSeaMin(), dimension.getSeaMax()));
+        checkCoverage(owner + " types", typeRanges, step);
+
+        if (dimension.getRegions() == null || dimension.getRegions().isEmpty()) {
+            problems.add(owner + " has no regions");
+        } else {
+            checkReferences(owner, dimension.getRegions(), true);
+            checkCoverage(owner + " regions", toRanges(dimension.getRegions()), step);
+        }
+
+        // Region ranges share the precision of the dimension they are used in
+        for (Region region : reachable) {
+            boolean[] useContext = {region.getContextSettings() != null && region.getContextSettings().isUseLandContext(),
+                    region.getContextSettings() != null && region.getContextSettings().isUseShoreContext(),
+                    region.getContextSettings() != null && region.getContextSettings().isUseSeaContext()};
+            List<List<? extends Layer<?>>> layers = getTypeLayers(region);
+            for (int type = 0; type < TYPES.length; type++) {
+                if (!useContext[type] && !layers.get(type).isEmpty()) {
+                    checkCoverage("Region " + region.getName() + " " + TYPES[type] + " layers in " + owner,
+                            toRanges(layers.get(type)), step);
+                }
+            }
+        }
+    }
+
+    private void checkRegion(Region region) {
+        String owner = "Region " + region.getName();
+        if (region.getZoom() <= 0) problems.add(owner + " has a zoom of " + region.getZoom());
+        if (region.getContextSettings() == null) problems.add(owner + " has no context settings");
+
+        checkReferences(owner, region.getLandRegions(), true);
+        checkReferences(owner, region.getLandBiomes(), false);
+        checkReferences(owner, region.getShoreRegions(), true);
+        checkReferences(owner, region.getShoreBiomes(), false);
+        checkReferences(owner, region.getSeaRegions(), true);
+        checkReferences(owner, region.getSeaBiomes(), false);
+
+        List<List<? extends Layer<?>>> layers = getTypeLayers(region);
+        for (int type = 0; type < TYPES.length; type++) {
+            if (layers.get(type).isEmpty()) problems.add(owner + " has no " + TYPES[type] + " regions or biomes");
+        }
+    }
+
+    private void checkReferences(String owner, List<? extends Layer<?>> layers, boolean regions) {
+        if (layers == null) {
+            problems.add(owner + " is missing a list of " + (regions ? "regions" : "biomes"));
+            return;
+        }
+        for (Layer<?> layer : layers) {
+            String name = layer.getLayerName();
+            if (regions ? !regionMap.containsKey(name) : !biomeNames.contains(name)) {
+                problems.add(owner + " refers to unknown " + (regions ? "region " : "biome ") + name);
+            }
+            if (layer.getMin() > layer.getMax()) {
+                problems.add(owner + " has a range for " + name + " with its min above its max");
+            }
+            if (layer.getContexts() == null) continue;
+            for (Context context : layer.getContexts()) {
+                // Contexts are the type strength, or the strength of one of the regions above
+                if (!"type".equals(context.getContext()) && !regionMap.containsKey(context.getContext())) {
+                    problems.add(owner + " uses unknown context " + context.getContext() + " for " + name);
+                }
+            }
+        }
+    }
+
+    private void checkCoverage(String owner, List<Range> ranges, double step) {
+        ranges.sort(Comparator.comparingDouble(range -> range.min));
+        double covered = -1 - step;
+        String previous = null;
+        for (Range range : ranges) {
+            if (range.min > covered + step + EPSILON) {
+                problems.add(owner + " leave a gap between " + (previous == null ? "-1" : previous) + " and " +
+                        range.name);
+            } else if (previous != null && range.min <= covered + EPSILON) {
+                problems.add(owner + " overlap between " + previous + " and " + range.name);
+            }
+            if (range.max > covered) {
+                covered = range.max;
+                previous = range.name;
+            }
+        }
+        if (covered < 1 - EPSILON) problems.add(owner + " don't reach 1");
+    }
+
+    private void checkReachable() {
+        List<Layer<?>> roots = new ArrayList<>();
+        for (Dimension dimension : pack.getDimensions()) {
+            if (dimension.getRegions() != null) roots.addAll(dimension.getRegions());
+        }
+        Set<String> reached = new HashSet<>();
+        for (Region region : getReachableRegions(roots)) reached.add(region.getName());
+        for (Region region : pack.getRegions()) {
+            if (region.getName() != null && !reached.contains(region.getName())) {
+                problems.add("Region " + region.getName() + " can't be reached from any dimension");
+            }
+        }
+    }
+
+    /**
+     * @return The regions the layers refer to and every region below them, unknown names are skipped.
+     */
+    private Collection<Region> getReachableRegions(List<? extends Layer<?>> roots) {
+        Set<Region> reached = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        for (Layer<?> layer : roots) queue.add(layer.getLayerName());
+        while (!queue.isEmpty()) {
+            Region region = regionMap.get(queue.poll());
+            if (region == null || !reached.add(region)) continue;
+            for (List<? extends Layer<?>> layers : Arrays.asList(region.getLandRegions(), region.getShoreRegions(),
+                    region.getSeaRegions())) {
+                if (layers == null) continue;
+                for (Layer<?> layer : layers) queue.add(layer.getLayerName());
+            }
+        }
+        return reached;
+    }
+
+    private static List<List<? extends Layer<?>>> getTypeLayers(Region region) {
+        return Arrays.asList(concat(region.getLandRegions(), region.getLandBiomes()),
+                concat(region.getShoreRegions(), region.getShoreBiomes()),
+                concat(region.getSeaRegions(), region.getSeaBiomes()));
+    }
+
+    private static List<Layer<?>> concat(List<? extends Layer<?>> regions, List<? extends Layer<?>> biomes) {
+        List<Layer<?>> layers = new ArrayList<>();
+        if (regions != null) layers.addAll(regions);
+        if (biomes != null) layers.addAll(biomes);
+        return layers;
+    }
+
+    private static List<Range> toRanges(List<? extends Layer<?>> layers) {
+        List<Range> ranges = new ArrayList<>();
+        for (Layer<?> layer : layers) {
+            ranges.add(new Range(layer.getLayerName(), layer.getMin(), layer.getMax()));
+        }
+        return ranges;
+    }
+
+    private static class Range {
+        private final String name;
+        private final double min;
+        private final double max;
+
+        private Range(String name, double min, double max) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+}
@@ -0,0 +1,471 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.ContextSettings;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+import com.azortis.orbis.biomedemo.objects.layer.BiomeLayer;
+import com.azortis.orbis.biomedemo.objects.layer.Context;
+import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.objects.layer.RegionLayer;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * All dimensions, regions and biomes of a config tree. Can be read from the json directories, or from a single
+ * binary pack compiled from them, which loads without any json parsing or name lookups.
+ *
+ * The pack is a header (magic, version, payload length and CRC32) followed by the payload: a string table, then
+ * the biomes, regions and dimensions. Layers refer to their region or biome by index, so a pack that loads
+ * never has dangling references.
+ */
+public final class DimensionPack {
+
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+
+    private static final int MAGIC = 0x4F524250; // ORBP
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int NULL_REFERENCE = -1;
+
+    private final List<Dimension> dimensions;
+    private final List<Region> regions;
+    private final List<Biome> biomes;
+    // Files of the config tree that didn't parse, reported with the other problems by validate()
+    private final List<String> parseProblems;
+
+    public DimensionPack(List<Dimension> dimensions, List<Region> regions, List<Biome> biomes) {
+        this(dimensions, regions, biomes, Collections.emptyList());
+    }
+
+    private DimensionPack(List<Dimension> dimensions, List<Region> regions, List<Biome> biomes,
+                          List<String> parseProblems) {
+        this.dimensions = dimensions;
+        this.regions = regions;
+        this.biomes = biomes;
+        this.parseProblems = parseProblems;
+    }
+
+    public List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    public List<Biome> getBiomes() {
+        return biomes;
+    }
+
+    List<String> getParseProblems() {
+        return parseProblems;
+    }
+
+    /**
+     * Reads the dimensions, regions and biomes directories below the root directory. Files that aren't valid json
+     * for their kind of object are left out, and reported by {@link #validate()} along with every other problem.
+     *
+     * @throws UncheckedIOException if a file can't be read.
+     */
+    public static DimensionPack fromConfig(File rootDirectory) {
+        List<String> parseProblems = Collections.synchronizedList(new ArrayList<>());
+        List<Dimension> dimensions = readDirectory(new File(rootDirectory, "/dimensions/"), Dimension.class,
+                parseProblems);
+        List<Region> regions = readDirectory(new File(rootDirectory, "/regions/"), Region.class, parseProblems);
+        List<Biome> biomes = readDirectory(new File(rootDirectory, "/biomes/"), Biome.class, parseProblems);
+        List<String> sortedProblems = new ArrayList<>(parseProblems);
+        Collections.sort(sortedProblems);
+        return new DimensionPack(dimensions, regions, biomes, sortedProblems);
+    }
+
+    private static <T> List<T> readDirectory(File directory, Class<T> type, List<String> parseProblems) {
+        File[] files = Objects.requireNonNull(directory.listFiles());
+        // Directory listings have no defined order, sort them so the same tree always compiles to the same pack
+        Arrays.sort(files);
+        // Parsed on the common fork-join pool, the ordered stream keeps the sorted order
+        return Arrays.stream(files).parallel()
+                .map(file -> {
+                    try {
+                        return readFile(file, type);
+                    } catch (JsonParseException ex) {
+                        parseProblems.add(file + " can't be parsed: " + ex.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static <T> T readFile(File file, Class<T> type) {
+        try (Reader reader = new FileReader(file)) {
+            T object = gson.fromJson(reader, type);
+            if (object == null) throw new JsonParseException("the file is empty");
+            return object;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Can't read " + file, ex);
+        }
+    }
+
+    /**
+     * Points every layer at the region or biome it names, so samplers never look objects up by name.
+     *
+     * @throws IllegalArgumentException if a layer names a region or biome that doesn't exist.
+     */
+    public void link() {
+        Map<String, Region> regionMap = new HashMap<>();
+        for (Region region : regions) regionMap.put(region.getName(), region);
+        Map<String, Biome> biomeMap = new HashMap<>();
+        for (Biome biome : biomes) biomeMap.put(biome.getName(), biome);
+
+        for (Dimension dimension : dimensions) {
+            linkRegions("Dimension " + dimension.getName(), dimension.getRegions(), regionMap);
+        }
+        for (Region region : regions) {
+            String owner = "Region " + region.getName();
+            linkRegions(owner, region.getLandRegions(), regionMap);
+            linkBiomes(owner, region.getLandBiomes(), biomeMap);
+            linkRegions(owner, region.getShoreRegions(), regionMap);
+            linkBiomes(owner, region.getShoreBiomes(), biomeMap);
+            linkRegions(owner, region.getSeaRegions(), regionMap);
+            linkBiomes(owner, region.getSeaBiomes(), biomeMap);
+        }
+    }
+
+    private static void linkRegions(String owner, List<RegionLayer> layers, Map<String, Region> regionMap) {
+        if (layers == null) return;
+        for (RegionLayer layer : layers) {
+            Region region = regionMap.get(layer.getLayerName());
+            require(region != null, owner + " refers to unknown region " + layer.getLayerName());
+            layer.link(region);
+        }
+    }
+
+    private static void linkBiomes(String owner, List<BiomeLayer> layers, Map<String, Biome> biomeMap) {
+        if (layers == null) return;
+        for (BiomeLayer layer : layers) {
+            Biome biome = biomeMap.get(layer.getLayerName());
+            require(biome != null, owner + " refers to unknown biome " + layer.getLayerName());
+            layer.link(biome);
+        }
+    }
+
+    /**
+     * Checks names, references, contexts, contribution radii and that the ranges of every type cover -1 to 1
+     * without overlapping, then links the layers.
+     *
+     * @throws IllegalArgumentException listing every problem found.
+     */
+    public void validate() {
+        List<String> problems = new ConfigValidator(this).validate();
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Invalid config:" + System.lineSeparator() + " - " +
+                    String.join(System.lineSeparator() + " - ", problems));
+        }
+        link();
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) throw new IllegalArgumentException(message);
+    }
+
+    //
+    // Writing
+    //
+
+    /**
+     * Validates and writes this pack. The file is replaced as a whole, so a running server never maps a half
+     * written pack.
+     */
+    public void write(File packFile) throws IOException {
+        validate();
+
+        Map<String, Integer> regionIndices = new HashMap<>();
+        for (int i = 0; i < regions.size(); i++) regionIndices.put(regions.get(i).getName(), i);
+        Map<String, Integer> biomeIndices = new HashMap<>();
+        for (int i = 0; i < biomes.size(); i++) biomeIndices.put(biomes.get(i).getName(), i);
+
+        // The objects are written first, collecting their strings, so the table can be put in front of them
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream objectBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(objectBytes);
+
+        out.writeInt(biomes.size());
+        for (Biome biome : biomes) {
+            writeString(out, strings, biome.getName());
+            out.writeInt(biome.getId());
+            out.writeInt(biome.getRgb() & 0xFFFFFF);
+        }
+
+        // All region names go first, so layers can refer to regions further down the table
+        out.writeInt(regions.size());
+        for (Region region : regions) {
+            writeString(out, strings, region.getName());
+        }
+        for (Region region : regions) {
+            ContextSettings contextSettings = region.getContextSettings();
+            out.writeBoolean(contextSettings != null);
+            if (contextSettings != null) {
+                out.writeBoolean(contextSettings.isUseLandContext());
+                out.writeBoolean(contextSettings.isUseShoreContext());
+                out.writeBoolean(contextSettings.isUseSeaContext());
+            }
+            out.writeLong(region.getSeed());
+            out.writeInt(region.getZoom());
+            out.writeInt(region.getContributionRadius());
+            writeLayers(out, strings, region.getLandRegions(), regionIndices);
+            writeLayers(out, strings, region.getLandBiomes(), biomeIndices);
+            writeLayers(out, strings, region.getShoreRegions(), regionIndices);
+            writeLayers(out, strings, region.getShoreBiomes(), biomeIndices);
+            writeLayers(out, strings, region.getSeaRegions(), regionIndices);
+            writeLayers(out, strings, region.getSeaBiomes(), biomeIndices);
+        }
+
+        out.writeInt(dimensions.size());
+        for (Dimension dimension : dimensions) {
+            writeString(out, strings, dimension.getName());
+            out.writeLong(dimension.getSeed());
+            out.writeLong((long) dimension.getPrecision());
+            out.writeLong(dimension.getRegionSeed());
+            out.writeInt(dimension.getRegionZoom());
+            out.writeLong(dimension.getTypeSeed());
+            out.writeInt(dimension.getTypeZoom());
+            out.writeDouble(dimension.getSeaMin());
+            out.writeDouble(dimension.getSeaMax());
+            out.writeDouble(dimension.getShoreMin());
+            out.writeDouble(dimension.getShoreMax());
+            out.writeDouble(dimension.getLandMin());
+            out.writeDouble(dimension.getLandMax());
+            out.writeDouble(dimension.getCellZoom());
+            out.writeInt(dimension.getCellPointContributionRadius());
+            out.writeInt(dimension.getTypeContributionRadius());
+            out.writeInt(dimension.getRegionContributionRadius());
+            writeLayers(out, strings, dimension.getRegions(), regionIndices);
+        }
+        out.flush();
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            payload.writeInt(bytes.length);
+            payload.write(bytes);
+        }
+        objectBytes.writeTo(payload);
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes.toByteArray());
+
+        File tempFile = new File(packFile.getPath() + ".tmp");
+        try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(payloadBytes.size());
+            file.writeInt((int) crc.getValue());
+            payloadBytes.writeTo(file);
+        }
+        Files.move(tempFile.toPath(), packFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(NULL_REFERENCE);
+        } else {
+            out.writeInt(strings.computeIfAbsent(string, key -> strings.size()));
+        }
+    }
+
+    private static void writeLayers(DataOutputStream out, Map<String, Integer> strings, List<? extends Layer<?>> layers,
+                                    Map<String, Integer> indices) throws IOException {
+        if (layers == null) {
+            out.writeInt(NULL_REFERENCE);
+            return;
+        }
+        out.writeInt(layers.size());
+        for (Layer<?> layer : layers) {
+            out.writeInt(indices.get(layer.getLayerName()));
+            out.writeDouble(layer.getMin());
+            out.writeDouble(layer.getMax());
+            out.writeInt(layer.getIndex());
+            out.writeInt(layer.getChance());
+            List<Context> contexts = layer.getContexts();
+            if (contexts == null) {
+                out.writeInt(NULL_REFERENCE);
+                continue;
+            }
+            out.writeInt(contexts.size());
+            for (Context context : contexts) {
+                writeString(out, strings, context.getContext());
+                out.writeDouble(context.getMin());
+                out.writeDouble(context.getMax());
+            }
+        }
+    }
+
+    //
+    // Loading
+    //
+
+    /**
+     * Memory maps a pack written by {@link #write(File)} and builds its objects.
+     *
+     * @throws IOException if the file can't be read, or isn't a valid pack of this version.
+     */
+    public static DimensionPack load(File packFile) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(packFile + " is not a dimension pack");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(packFile + " has version " + version + ", expected " + VERSION);
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new IOException(packFile + " is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException(packFile + " is corrupt");
+        }
+
+        try {
+            return read(buffer);
+        } catch (RuntimeException ex) {
+            throw new IOException(packFile + " is malformed", ex);
+        }
+    }
+
+    private static DimensionPack read(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Biome[] biomes = new Biome[buffer.getInt()];
+        for (int i = 0; i < biomes.length; i++) {
+            String name = readString(buffer, strings);
+            int id = buffer.getInt();
+            int rgb = buffer.getInt();
+            biomes[i] = new Biome(name, id, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+        }
+
+        String[] regionNames = new String[buffer.getInt()];
+        for (int i = 0; i < regionNames.length; i++) {
+            regionNames[i] = readString(buffer, strings);
+        }
+        Region[] regions = new Region[regionNames.length];
+        for (int i = 0; i < regions.length; i++) {
+            ContextSettings contextSettings = null;
+            if (buffer.get() != 0) {
+                contextSettings = new ContextSettings(buffer.get() != 0, buffer.get() != 0, buffer.get() != 0);
+            }
+            long seed = buffer.getLong();
+            int zoom = buffer.getInt();
+            int contributionRadius = buffer.getInt();
+            regions[i] = new Region(regionNames[i], contextSettings, seed, zoom,
+                    readRegionLayers(buffer, strings, regionNames), readBiomeLayers(buffer, strings, biomes),
+                    readRegionLayers(buffer, strings, regionNames), readBiomeLayers(buffer, strings, biomes),
+                    readRegionLayers(buffer, strings, regionNames), readBiomeLayers(buffer, strings, biomes),
+                    contributionRadius);
+        }
+
+        Dimension[] dimensions = new Dimension[buffer.getInt()];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = new Dimension(readString(buffer, strings), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getInt(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    readRegionLayers(buffer, strings, regionNames));
+        }
+        if (buffer.hasRemaining()) throw new IllegalStateException("Trailing bytes after the dimensions");
+
+        return new DimensionPack(Arrays.asList(dimensions), Arrays.asList(regions), Arrays.asList(biomes));
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) {
+        int index = buffer.getInt();
+        return index == NULL_REFERENCE ? null : strings[index];
+    }
+
+    private static List<RegionLayer> readRegionLayers(ByteBuffer buffer, String[] strings, String[] regionNames) {
+        int count = buffer.getInt();
+        if (count == NULL_REFERENCE) return null;
+        List<RegionLayer> layers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            layers.add(new RegionLayer(regionNames[buffer.getInt()], buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), readContexts(buffer, strings)));
+        }
+        return layers;
+    }
+
+    private static List<BiomeLayer> readBiomeLayers(ByteBuffer buffer, String[] strings, Biome[] biomes) {
+        int count = buffer.getInt();
+        if (count == NULL_REFERENCE) return null;
+        List<BiomeLayer> layers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            layers.add(new BiomeLayer(biomes[buffer.getInt()].getName(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), readContexts(buffer, strings)));
+        }
+        return layers;
+    }
+
+    private static List<Context> readContexts(ByteBuffer buffer, String[] strings) {
+        int count = buffer.getInt();
+        if (count == NULL_REFERENCE) return null;
+        List<Context> contexts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contexts.add(new Context(readString(buffer, strings), buffer.getDouble(), buffer.getDouble()));
+        }
+        return contexts;
+    }
+
+}
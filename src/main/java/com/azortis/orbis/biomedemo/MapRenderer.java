@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.io.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders the biome colors of an area as rows of pixels, in strips rendered in parallel on a {@link ForkJoinPool}.
+ * The next strip is rendered while the rows of the last one are written, only those two strips are held in memory,
+ * so the size of the map is only bounded by the output.
+ *
+ * At scale one every pixel is a block of the blended chunks. At larger scales a pixel is the biome of the closest cell
+ * point to the block at its corner, sampled in tiles of at most {@link #TILE_BLOCKS} blocks wide.
+ */
+public final class MapRenderer {
+
+    public static final int TILE_BLOCKS = 256;
+
+    private final AreaGenerator generator;
+    private final BiomePalette palette;
+
+    public MapRenderer(AreaGenerator generator, BiomePalette palette) {
+        this.generator = generator;
+        this.palette = palette;
+    }
+
+    /**
+     * @param minX  The block of the first pixel.
+     * @param width In pixels, each scale blocks apart.
+     */
+    public void render(ForkJoinPool pool, int minX, int minZ, int width, int height, int scale, RowWriter writer)
+            throws IOException {
+        if (width <= 0 || height <= 0 || scale <= 0)
+            throw new IllegalArgumentException("Can't render " + width + " by " + height + " at scale " + scale);
+        final int stripHeight = scale == 1 ? generator.getChunkWidth() : Math.max(1, TILE_BLOCKS / scale);
+        int[] strip = new int[width * stripHeight];
+        int[] nextStrip = new int[width * stripHeight];
+
+        ForkJoinTask<?> rendering = pool.submit(renderStrip(pool, strip, minX, minZ, width, 0, scale,
+                stripHeight));
+        for (int z = 0; z < height; z += stripHeight) {
+            rendering.join();
+            if (z + stripHeight < height) {
+                rendering = pool.submit(renderStrip(pool, nextStrip, minX, minZ, width, z + stripHeight, scale,
+                        stripHeight));
+            }
+            final int rows = Math.min(stripHeight, height - z);
+            for (int row = 0; row < rows; row++) {
+                writer.writeRow(strip, row * width);
+            }
+            int[] written = strip;
+            strip = nextStrip;
+            nextStrip = written;
+        }
+    }
+
+    private Runnable renderStrip(ForkJoinPool pool, int[] strip, int minX, int minZ, int width, int z, int scale,
+                                 int stripHeight) {
+        if (scale == 1) {
+            return () -> generator.generate(pool, minX, minZ + z, width, stripHeight,
+                    (chunkX, chunkZ, biomes) -> writeChunk(strip, width, chunkX - minX, chunkZ - minZ - z, biomes));
+        }
+        return new TileTask(strip, minX, minZ + z * scale, width, scale, stripHeight, 0,
+                (width + stripHeight - 1) / stripHeight)::invoke;
+    }
+
+    private void writeChunk(int[] strip, int width, int offsetX, int offsetZ, LinkedBiomeWeightMap biomes) {
+        final int chunkWidth = generator.getChunkWidth();
+        for (int zi = 0; zi < chunkWidth; zi++) {
+            final int z = offsetZ + zi;
+            if (z * width >= strip.length) break;
+            for (int xi = 0; xi < chunkWidth && offsetX + xi < width; xi++) {
+                double r, g, b;
+                r = g = b = 0;
+                for (LinkedBiomeWeightMap entry = biomes; entry != null; entry = entry.getNext()) {
+                    double weight = entry.getWeights()[zi * chunkWidth + xi];
+                    int biomeId = entry.getBiome();
+                    r += palette.getRed(biomeId) * weight;
+                    g += palette.getGreen(biomeId) * weight;
+                    b += palette.getBlue(biomeId) * weight;
+                }
+                strip[z * width + offsetX + xi] = 0xFF000000 | (int) r << 16 | (int) g << 8 | (int) b;
+            }
+        }
+    }
+
+    /**
+     * Receives the rendered rows from top to bottom, on the thread that called render.
+     */
+    public interface RowWriter extends Closeable {
+        /**
+         * @param rgb The pixels of the row from the offset, the array is reused once this returns.
+         */
+        void writeRow(int[] rgb, int offset) throws IOException;
+    }
+
+    /**
+     * @return A writer of the pixels as bytes of red, green and blue, without any header.
+     */
+    public static RowWriter rawRgbWriter(OutputStream out, int width) {
+        final OutputStream bufferedOut = new BufferedOutputStream(out);
+        final byte[] row = new byte[3 * width];
+        return new RowWriter() {
+            @Override
+            public void writeRow(int[] rgb, int offset) throws IOException {
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    final int color = rgb[offset + x];
+                    row[i] = (byte) (color >> 16);
+                    row[i + 1] = (byte) (color >> 8);
+                    row[i + 2] = (byte) color;
+                }
+                bufferedOut.write(row);
+            }
+
+            @Override
+            public void close() throws IOException {
+                bufferedOut.close();
+            }
+        };
+    }
+
+    // Renders a range of square tiles of the strip, split in halves until single tiles remain.
+    private class TileTask extends RecursiveAction {
+        private final int[] strip;
+        private final int minX;
+        private final int minZ;
+        private final int width;
+        private final int scale;
+        private final int tileSize;
+        private final int start;
+        private final int end;
+
+        TileTask(int[] strip, int minX, int minZ, int width, int scale, int tileSize, int start, int end) {
+            this.strip = strip;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.width = width;
+            this.scale = scale;
+            this.tileSize = tileSize;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                final int offsetX = start * tileSize;
+                int[] biomes = generator.sampleArea(minX + offsetX * scale, minZ, tileSize, scale);
+                for (int zi = 0; zi < tileSize; zi++) {
+                    for (int xi = 0; xi < tileSize && offsetX + xi < width; xi++) {
+                        strip[zi * width + offsetX + xi] = palette.getRgb(biomes[zi * tileSize + xi]);
+                    }
+                }
+            } else {
+                final int middle = (start + end) >>> 1;
+                invokeAll(new TileTask(strip, minX, minZ, width, scale, tileSize, start, middle),
+                        new TileTask(strip, minX, minZ, width, scale, tileSize, middle, end));
+            }
+        }
+    }
+
+}
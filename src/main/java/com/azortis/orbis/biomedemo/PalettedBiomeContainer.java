@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The biome of every column of a chunk, as indices into a palette of the biomes in that chunk packed into longs. With
+ * the few biomes a chunk has an index takes one or two bits, a chunk with a single biome stores no indices at all.
+ *
+ * Indices don't span two longs, so reading one is a shift and a mask. Containers are immutable.
+ */
+public final class PalettedBiomeContainer {
+
+    // Largest width and palette size that are written
+    private static final int MAX_SIZE = 0xFFFF;
+
+    private final int width;
+    private final int[] palette;
+    private final int bitsPerEntry;
+    private final int entriesPerLong;
+    private final long[] data;
+
+    private PalettedBiomeContainer(int width, int[] palette, long[] data) {
+        this.width = width;
+        this.palette = palette;
+        this.bitsPerEntry = getBitsPerEntry(palette.length);
+        this.entriesPerLong = bitsPerEntry == 0 ? 0 : Long.SIZE / bitsPerEntry;
+        this.data = data;
+    }
+
+    /**
+     * @return The biome with the largest weight in each column of the blended chunk, the first in the map on a tie.
+     */
+    public static PalettedBiomeContainer fromBlend(LinkedBiomeWeightMap biomes, int chunkWidth) {
+        final int columns = chunkWidth * chunkWidth;
+        int[] dominant = new int[columns];
+        double[] maxWeights = new double[columns];
+        Arrays.fill(maxWeights, Double.NEGATIVE_INFINITY);
+        for (LinkedBiomeWeightMap entry = biomes; entry != null; entry = entry.getNext()) {
+            double[] weights = entry.getWeights();
+            for (int column = 0; column < columns; column++) {
+                if (weights[column] > maxWeights[column]) {
+                    maxWeights[column] = weights[column];
+                    dominant[column] = entry.getBiome();
+                }
+            }
+        }
+        return of(dominant, chunkWidth);
+    }
+
+    /**
+     * @param biomes The biome of each column, indexed by z * width + x.
+     */
+    public static PalettedBiomeContainer of(int[] biomes, int width) {
+        if (width < 1) throw new IllegalArgumentException("Invalid width " + width);
+        if (biomes.length != (long) width * width)
+            throw new IllegalArgumentException(biomes.length + " biomes for a width of " + width);
+        // The palette is in order of first appearance, linear search beats hashing for the handful of biomes.
+        int[] palette = new int[4];
+        int paletteSize = 0;
+        int[] indices = new int[biomes.length];
+        for (int column = 0; column < biomes.length; column++) {
+            int index = 0;
+            while (index < paletteSize && palette[index] != biomes[column]) index++;
+            if (index == paletteSize) {
+                if (paletteSize == palette.length) palette = Arrays.copyOf(palette, paletteSize * 2);
+                palette[paletteSize++] = biomes[column];
+            }
+            indices[column] = index;
+        }
+        palette = Arrays.copyOf(palette, paletteSize);
+
+        final int bitsPerEntry = getBitsPerEntry(paletteSize);
+        if (bitsPerEntry == 0) return new PalettedBiomeContainer(width, palette, new long[0]);
+        final int entriesPerLong = Long.SIZE / bitsPerEntry;
+        long[] data = new long[(indices.length + entriesPerLong - 1) / entriesPerLong];
+        for (int column = 0; column < indices.length; column++) {
+            data[column / entriesPerLong] |= (long) indices[column] << (column % entriesPerLong * bitsPerEntry);
+        }
+        return new PalettedBiomeContainer(width, palette, data);
+    }
+
+    public int get(int x, int z) {
+        if (x < 0 || x >= width || z < 0 || z >= width)
+            throw new IndexOutOfBoundsException("Column " + x + ", " + z + " outside a width of " + width);
+        if (bitsPerEntry == 0) return palette[0];
+        final int column = z * width + x;
+        final long bits = data[column / entriesPerLong] >>> (column % entriesPerLong * bitsPerEntry);
+        return palette[(int) bits & ((1 << bitsPerEntry) - 1)];
+    }
+
+    /**
+     * @return The biome of each column, indexed by z * width + x.
+     */
+    public int[] decode() {
+        return decode(new int[width * width]);
+    }
+
+    /**
+     * @param biomes Filled with the biome of each column, at least width * width long.
+     */
+    public int[] decode(int[] biomes) {
+        final int columns = width * width;
+        if (bitsPerEntry == 0) {
+            Arrays.fill(biomes, 0, columns, palette[0]);
+            return biomes;
+        }
+        final int mask = (1 << bitsPerEntry) - 1;
+        int column = 0;
+        for (long bits : data) {
+            for (int i = 0; i < entriesPerLong && column < columns; i++, column++) {
+                biomes[column] = palette[(int) bits & mask];
+                bits >>>= bitsPerEntry;
+            }
+        }
+        return biomes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The distinct biomes of the chunk in order of first appearance, must not be modified.
+     */
+    public int[] getPalette() {
+        return palette;
+    }
+
+    public int getBitsPerEntry() {
+        return bitsPerEntry;
+    }
+
+    /**
+     * @return How many bytes {@link #write(DataOutput)} writes.
+     */
+    public int getSerializedSize() {
+        return Short.BYTES * 2 + palette.length * Integer.BYTES + data.length * Long.BYTES;
+    }
+
+    /**
+     * @throws IOException if the width or the palette doesn't fit the two bytes they're written as.
+     */
+    public void write(DataOutput out) throws IOException {
+        if (width > MAX_SIZE || palette.length > MAX_SIZE)
+            throw new IOException("Biome container of width " + width + " with " + palette.length +
+                    " biomes is too large to write");
+        out.writeShort(width);
+        out.writeShort(palette.length);
+        for (int biome : palette) out.writeInt(biome);
+        for (long bits : data) out.writeLong(bits);
+    }
+
+    /**
+     * @throws IOException if the container doesn't fit a chunk, or has an index past its palette.
+     */
+    public static PalettedBiomeContainer read(DataInput in) throws IOException {
+        final int width = in.readUnsignedShort();
+        final int paletteSize = in.readUnsignedShort();
+        if (width == 0 || paletteSize == 0 || paletteSize > (long) width * width)
+            throw new IOException("Invalid biome container of width " + width + " with " + paletteSize + " biomes");
+        int[] palette = new int[paletteSize];
+        for (int i = 0; i < paletteSize; i++) palette[i] = in.readInt();
+        final int bitsPerEntry = getBitsPerEntry(paletteSize);
+        final int entriesPerLong = bitsPerEntry == 0 ? 1 : Long.SIZE / bitsPerEntry;
+        long[] data = new long[bitsPerEntry == 0 ? 0 : (width * width + entriesPerLong - 1) / entriesPerLong];
+        for (int i = 0; i < data.length; i++) data[i] = in.readLong();
+
+        PalettedBiomeContainer container = new PalettedBiomeContainer(width, palette, data);
+        // Check the indices once, so get can't read past the palette.
+        if (bitsPerEntry > 0 && Integer.bitCount(paletteSize) != 1) {
+            final int mask = (1 << bitsPerEntry) - 1;
+            for (int column = 0; column < width * width; column++) {
+                final long bits = data[column / entriesPerLong] >>> (column % entriesPerLong * bitsPerEntry);
+                if (((int) bits & mask) >= paletteSize) throw new IOException("Biome index past the palette");
+            }
+        }
+        return container;
+    }
+
+    private static int getBitsPerEntry(int paletteSize) {
+        return paletteSize <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an RGB png one row at a time, so images far larger than the heap can be written. The compressed rows are
+ * flushed as separate data chunks whenever the buffer fills, only a single row is kept.
+ */
+public final class PngWriter implements MapRenderer.RowWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_BUFFER_SIZE = 1 << 16;
+    // Each byte minus the one to its left, biome maps are mostly runs of the same color.
+    private static final byte FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream imageData;
+    private final byte[] row;
+    private int rows;
+
+    public PngWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || 1 + 3L * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Can't write a png of " + width + " by " + height);
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + 3 * width];
+        this.row[0] = FILTER_SUB;
+        this.out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(width);
+        headerOut.writeInt(height);
+        headerOut.writeByte(8); // Bit depth
+        headerOut.writeByte(2); // Truecolor
+        headerOut.writeByte(0); // Deflate
+        headerOut.writeByte(0); // Adaptive filtering
+        headerOut.writeByte(0); // No interlacing
+        writeChunk("IHDR", header.toByteArray(), header.size());
+        imageData = new DeflaterOutputStream(new ChunkOutputStream(), deflater, CHUNK_BUFFER_SIZE);
+    }
+
+    @Override
+    public void writeRow(int[] rgb, int offset) throws IOException {
+        if (rows == height) throw new IllegalStateException("All " + height + " rows were written");
+        int previous = 0;
+        for (int x = 0, i = 1; x < width; x++, i += 3) {
+            final int color = rgb[offset + x];
+            row[i] = (byte) ((color >> 16) - (previous >> 16));
+            row[i + 1] = (byte) ((color >> 8) - (previous >> 8));
+            row[i + 2] = (byte) (color - previous);
+            previous = color;
+        }
+        imageData.write(row);
+        rows++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rows != height)
+                throw new IllegalStateException("Only " + rows + " of " + height + " rows were written");
+            imageData.finish();
+            imageData.flush();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // Splits the compressed stream into data chunks of at most the buffer size.
+    private final class ChunkOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) flush();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) flush();
+                final int length = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, length);
+                size += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size == 0) return;
+            writeChunk("IDAT", buffer, size);
+            size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+}
@@ -27,78 +27,129 @@ package com.azortis.orbis.biomedemo;
 import com.azortis.orbis.biomedemo.objects.Biome;
 import com.azortis.orbis.biomedemo.objects.Dimension;
 import com.azortis.orbis.biomedemo.objects.Region;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Publishes the loaded config as {@link RegistrySnapshot}s. Reading never locks, a reload builds the next snapshot
+ * on a background thread and swaps it in at once, so generation never waits on it.
+ */
 public class Registry {
 
-    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
-    private static final Map<String, Dimension> dimensionMap = new HashMap<>();
-    private static final Map<String, Region> regionMap = new HashMap<>();
-    private static final Map<String, Biome> biomeMap = new HashMap<>();
+    private static volatile RegistrySnapshot snapshot = RegistrySnapshot.EMPTY;
+    private static volatile PackSource source;
 
-    private static final Map<Integer, Biome> biomeIdMap = new HashMap<>();
+    private static final Object publishLock = new Object();
+    private static final List<ReloadListener> listeners = new CopyOnWriteArrayList<>();
+    private static final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Registry reload");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private Registry(){}
 
     public static void initialize(){
         File rootDirectory = new File(System.getProperty("user.dir"));
-        File dimensionDirectory = new File(rootDirectory, "/dimensions/");
-        for (File dimensionFile : Objects.requireNonNull(dimensionDirectory.listFiles())) {
-            try{
-                Dimension dimension = gson.fromJson(new FileReader(dimensionFile), Dimension.class);
-                dimensionMap.put(dimension.getName(), dimension);
-            }catch (FileNotFoundException ex){
-                ex.printStackTrace();
-            }
-        }
-        File regionsDirectory = new File(rootDirectory, "/regions/");
-        for (File regionFile : Objects.requireNonNull(regionsDirectory.listFiles())) {
-            try{
-                Region region = gson.fromJson(new FileReader(regionFile), Region.class);
-                regionMap.put(region.getName(), region);
-            } catch (FileNotFoundException ex) {
-                ex.printStackTrace();
+        publish(DimensionPack.fromConfig(rootDirectory));
+        source = () -> DimensionPack.fromConfig(rootDirectory);
+    }
+
+    /**
+     * Loads a pack compiled with {@link DimensionPack#write(File)} instead of the config directories.
+     */
+    public static void initialize(File packFile) throws IOException {
+        publish(DimensionPack.load(packFile));
+        source = () -> DimensionPack.load(packFile);
+    }
+
+    /**
+     * Loads the config again from where it was initialized, in the background. Until the future completes the
+     * previous snapshot stays published, and it stays so if loading fails.
+     */
+    public static CompletableFuture<RegistrySnapshot> reload() {
+        PackSource packSource = source;
+        if (packSource == null) throw new IllegalStateException("Registry is not initialized");
+        CompletableFuture<RegistrySnapshot> future = new CompletableFuture<>();
+        reloadExecutor.execute(() -> {
+            try {
+                future.complete(publish(packSource.load()));
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
             }
-        }
-        File biomesDirectory = new File(rootDirectory, "/biomes/");
-        for (File biomeFile : Objects.requireNonNull(biomesDirectory.listFiles())) {
-            try{
-                Biome biome = gson.fromJson(new FileReader(biomeFile), Biome.class);
-                biomeMap.put(biome.getName(), biome);
-                biomeIdMap.put(biome.getId(), biome);
-            } catch (FileNotFoundException ex) {
-                ex.printStackTrace();
+        });
+        return future;
+    }
+
+    // Listeners are notified under the lock too, so they see the snapshots in version order.
+    private static RegistrySnapshot publish(DimensionPack pack) {
+        synchronized (publishLock) {
+            RegistrySnapshot previous = snapshot;
+            RegistrySnapshot current = new RegistrySnapshot(previous.getVersion() + 1, pack);
+            snapshot = current;
+            for (ReloadListener listener : listeners) {
+                listener.onReload(previous, current);
             }
+            return current;
         }
     }
 
+    /**
+     * Called after every publication, so caches derived from the previous snapshot can drop what changed. Calls come
+     * one at a time in version order, the next publication waits for the listeners of the previous one.
+     */
+    public static void addListener(ReloadListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(ReloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The current snapshot, hold on to it to read a consistent config across several calls.
+     */
+    public static RegistrySnapshot getSnapshot() {
+        return snapshot;
+    }
+
     @NotNull
     public static Dimension getDimension(String name){
-        return dimensionMap.get(name);
+        return snapshot.getDimension(name);
     }
 
     @NotNull
     public static Region getRegion(String name){
-        return regionMap.get(name);
+        return snapshot.getRegion(name);
     }
 
     @NotNull
     public static Biome getBiome(String name){
-        return biomeMap.get(name);
+        return snapshot.getBiome(name);
     }
 
     @NotNull
     public static Biome getBiome(int id){
-        return biomeIdMap.get(id);
+        return snapshot.getBiome(id);
+    }
+
+    public static BiomePalette getPalette() {
+        return snapshot.getPalette();
+    }
+
+    public interface ReloadListener {
+        void onReload(RegistrySnapshot previous, RegistrySnapshot current);
+    }
+
+    private interface PackSource {
+        DimensionPack load() throws IOException;
     }
 
 }
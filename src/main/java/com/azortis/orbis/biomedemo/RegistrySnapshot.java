@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One loaded config, never modified after it is published. Samplers that keep a snapshot for the duration of
+ * their work see a consistent config, even while a reload swaps in a newer one.
+ */
+public final class RegistrySnapshot {
+
+    static final RegistrySnapshot EMPTY = new RegistrySnapshot(0, new DimensionPack(Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList()));
+
+    private final long version;
+    private final Map<String, Dimension> dimensionMap = new HashMap<>();
+    private final Map<String, Region> regionMap = new HashMap<>();
+    private final Map<String, Biome> biomeMap = new HashMap<>();
+    private final BiomePalette palette;
+
+    /**
+     * Validates and links the pack, which must not be shared with any other snapshot.
+     *
+     * @throws IllegalArgumentException listing the problems of an invalid config.
+     */
+    RegistrySnapshot(long version, DimensionPack pack) {
+        this.version = version;
+        pack.validate();
+        for (Dimension dimension : pack.getDimensions()) {
+            dimensionMap.put(dimension.getName(), dimension);
+        }
+        for (Region region : pack.getRegions()) {
+            regionMap.put(region.getName(), region);
+        }
+        for (Biome biome : pack.getBiomes()) {
+            biomeMap.put(biome.getName(), biome);
+        }
+        palette = new BiomePalette(pack.getBiomes());
+    }
+
+    /**
+     * @return A number that increases with every snapshot the {@link Registry} publishes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Dimension getDimension(String name) {
+        return dimensionMap.get(name);
+    }
+
+    public Region getRegion(String name) {
+        return regionMap.get(name);
+    }
+
+    public Biome getBiome(String name) {
+        return biomeMap.get(name);
+    }
+
+    public Biome getBiome(int id) {
+        return palette.getBiome(id);
+    }
+
+    public BiomePalette getPalette() {
+        return palette;
+    }
+
+}
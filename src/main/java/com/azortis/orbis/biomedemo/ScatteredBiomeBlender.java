@@ -34,13 +34,14 @@ public class ScatteredBiomeBlender {
 
     private final int chunkWidth;
     private final int chunkColumnCount;
+    private final double blendKernelRadius;
     private final double blendKernelRadiusSq;
     private final ChunkPointGatherer<BiomeEvaluation> gatherer;
 
     public ScatteredBiomeBlender(double samplingFrequency, double minBlendRadius, int chunkWidth) {
         this.chunkWidth = chunkWidth;
         this.chunkColumnCount = chunkWidth * chunkWidth;
-        double blendKernelRadius = minBlendRadius
+        this.blendKernelRadius = minBlendRadius
                 + UnfilteredPointGatherer.MAX_GRIDSCALE_DISTANCE_TO_CLOSEST_POINT / samplingFrequency;
         this.blendKernelRadiusSq = blendKernelRadius * blendKernelRadius;
         this.gatherer = new ChunkPointGatherer<>(samplingFrequency, blendKernelRadius, chunkWidth);
@@ -127,6 +128,13 @@ public class ScatteredBiomeBlender {
         return linkedBiomeMapStartEntry;
     }
 
+    /**
+     * @return How far from the chunk the biomes are evaluated for blending.
+     */
+    public double getBlendKernelRadius() {
+        return blendKernelRadius;
+    }
+
     @FunctionalInterface
     public interface BiomeEvaluationCallback {
         int getBiomeAt(double x, double z);
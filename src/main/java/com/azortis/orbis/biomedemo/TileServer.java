@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.point.CompiledDimension;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves png tiles of a dimension over http, with a page at the root to browse them. A tile at zoom level z is
+ * {@link #TILE_SIZE} pixels of 2^z blocks each, level 0 shows every block blended. Tiles are rendered by the
+ * {@link MapRenderer} on a shared pool, requests for a tile that is already rendering wait for it.
+ *
+ * Rendered tiles are kept in memory up to a budget of bytes, least recently used first out. The ETag of a tile is the
+ * version of the registry snapshot and the seed of the dimension, so browsers revalidate and only download tiles
+ * again after a reload changed them. Posting to /reload reloads the config from disk.
+ */
+public final class TileServer implements AutoCloseable {
+
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_ZOOM = 8;
+
+    private static final Pattern TILE_PATH = Pattern.compile("/tiles/(\\d+)/(-?\\d+)/(-?\\d+)\\.png");
+    private static final int CHUNK_WIDTH = 16;
+    private static final int MIN_BLEND_RADIUS = 32;
+    private static final double POINT_FREQUENCY = 0.04;
+
+    private final String dimensionName;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ForkJoinPool renderPool;
+    private final long maxCacheBytes;
+
+    // Guarded by this
+    private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+    private TileRenderer renderer;
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    public TileServer(InetSocketAddress address, String dimensionName, int threads, long maxCacheBytes)
+            throws IOException {
+        this.dimensionName = dimensionName;
+        this.maxCacheBytes = maxCacheBytes;
+        this.renderPool = new ForkJoinPool(threads);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.requestExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Tile Server " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        renderPool.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            final String method = exchange.getRequestMethod();
+            // Reloading changes state, so it can't be triggered by following a link.
+            if (path.equals("/reload") ? !method.equals("POST") : !method.equals("GET") && !method.equals("HEAD")) {
+                send(exchange, 405, "text/plain", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Matcher matcher = TILE_PATH.matcher(path);
+            if (matcher.matches()) {
+                handleTile(exchange, Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                        Integer.parseInt(matcher.group(3)));
+            } else if (path.equals("/")) {
+                send(exchange, 200, "text/html; charset=utf-8", VIEWER.getBytes(StandardCharsets.UTF_8));
+            } else if (path.equals("/reload")) {
+                RegistrySnapshot snapshot = Registry.reload().join();
+                send(exchange, 200, "text/plain", ("Reloaded config version " + snapshot.getVersion())
+                        .getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (NumberFormatException ex) {
+            send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException ex) {
+            send(exchange, 500, "text/plain", String.valueOf(ex).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTile(HttpExchange exchange, int zoom, int tileX, int tileZ) throws IOException {
+        // Tiles reaching past the int coordinates don't exist, like the levels past the deepest zoom.
+        if (zoom > MAX_ZOOM || !isInRange(zoom, tileX) || !isInRange(zoom, tileZ)) {
+            send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        TileRenderer renderer = getRenderer();
+        exchange.getResponseHeaders().set("ETag", renderer.etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (renderer.etag.equals(ifNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        send(exchange, 200, "image/png", getTile(renderer, zoom, tileX, tileZ));
+    }
+
+    private byte[] getTile(TileRenderer renderer, int zoom, int tileX, int tileZ) throws IOException {
+        final String key = renderer.etag + '/' + zoom + '/' + tileX + '/' + tileZ;
+        synchronized (this) {
+            byte[] tile = tiles.get(key);
+            if (tile != null) return tile;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = rendering.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                throw new IOException("Rendering tile " + key + " failed", ex.getCause());
+            }
+        }
+        try {
+            byte[] tile = renderer.render(zoom, tileX, tileZ);
+            synchronized (this) {
+                if (tiles.put(key, tile) == null) cacheBytes += tile.length;
+                // Evict the least recently used tiles, but always keep the one just rendered.
+                for (Iterator<byte[]> iterator = tiles.values().iterator();
+                     cacheBytes > maxCacheBytes && tiles.size() > 1; ) {
+                    cacheBytes -= iterator.next().length;
+                    iterator.remove();
+                }
+            }
+            future.complete(tile);
+            return tile;
+        } catch (IOException | RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            rendering.remove(key, future);
+        }
+    }
+
+    private static boolean isInRange(int zoom, int tile) {
+        final long tileBlocks = (long) TILE_SIZE << zoom;
+        final long min = tile * tileBlocks;
+        return min >= Integer.MIN_VALUE && min + tileBlocks - 1 <= Integer.MAX_VALUE;
+    }
+
+    // Rebuilt once a reload published a new snapshot, the tiles of older snapshots age out of the cache.
+    private synchronized TileRenderer getRenderer() {
+        RegistrySnapshot snapshot = Registry.getSnapshot();
+        if (renderer == null || renderer.version != snapshot.getVersion()) {
+            Dimension dimension = snapshot.getDimension(dimensionName);
+            if (dimension == null) throw new IllegalStateException("Dimension " + dimensionName + " doesn't exist");
+            renderer = new TileRenderer(snapshot, dimension);
+        }
+        return renderer;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private final class TileRenderer {
+        final long version;
+        final String etag;
+        final MapRenderer mapRenderer;
+
+        TileRenderer(RegistrySnapshot snapshot, Dimension dimension) {
+            this.version = snapshot.getVersion();
+            this.etag = "\"" + version + "-" + Long.toHexString(dimension.getSeed()) + "\"";
+            CompiledDimension compiledDimension = CompiledDimension.compile(dimension);
+            ScatteredBiomeBlender blender = new ScatteredBiomeBlender(POINT_FREQUENCY, MIN_BLEND_RADIUS, CHUNK_WIDTH);
+            AreaGenerator generator = new AreaGenerator(compiledDimension, blender, CHUNK_WIDTH,
+                    compiledDimension.getSearchRadius(blender.getBlendKernelRadius()));
+            this.mapRenderer = new MapRenderer(generator, snapshot.getPalette());
+        }
+
+        byte[] render(int zoom, int tileX, int tileZ) throws IOException {
+            final int scale = 1 << zoom;
+            final long tileBlocks = (long) TILE_SIZE * scale;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PngWriter writer = new PngWriter(out, TILE_SIZE, TILE_SIZE)) {
+                mapRenderer.render(renderPool, Math.toIntExact(tileX * tileBlocks),
+                        Math.toIntExact(tileZ * tileBlocks), TILE_SIZE, TILE_SIZE, scale, writer);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // Drag to pan, scroll to zoom around the cursor.
+    private static final String VIEWER = "<!DOCTYPE html><html><head><title>Orbis Biome Demo</title><style>" +
+            "body{margin:0;overflow:hidden;background:#222}img{position:absolute;width:" + TILE_SIZE + "px;height:" +
+            TILE_SIZE + "px;image-rendering:pixelated}#info{position:fixed;left:8px;top:8px;color:#fff;" +
+            "font:14px sans-serif;z-index:1}</style></head><body><div id=\"info\"></div><script>\n" +
+            "let zoom=0,x=0,z=0,tiles={};const T=" + TILE_SIZE + ",MAX=" + MAX_ZOOM + ";\n" +
+            "function draw(){const s=1<<zoom,w=innerWidth,h=innerHeight,seen={};\n" +
+            " for(let tz=Math.floor((z-h/2*s)/(T*s));tz*T*s<z+h/2*s;tz++)" +
+            "for(let tx=Math.floor((x-w/2*s)/(T*s));tx*T*s<x+w/2*s;tx++){\n" +
+            "  const k=zoom+'/'+tx+'/'+tz;seen[k]=1;let i=tiles[k];\n" +
+            "  if(!i){i=tiles[k]=document.createElement('img');i.src='/tiles/'+k+'.png';i.draggable=false;" +
+            "document.body.appendChild(i);}\n" +
+            "  i.style.left=(tx*T*s-x)/s+w/2+'px';i.style.top=(tz*T*s-z)/s+h/2+'px';}\n" +
+            " for(const k in tiles)if(!seen[k]){tiles[k].remove();delete tiles[k];}\n" +
+            " document.getElementById('info').textContent='x '+Math.round(x)+' z '+Math.round(z)+' zoom '+zoom;}\n" +
+            "let drag=null;onmousedown=e=>drag=[e.clientX,e.clientY];onmouseup=()=>drag=null;\n" +
+            "onmousemove=e=>{if(!drag)return;const s=1<<zoom;x-=(e.clientX-drag[0])*s;z-=(e.clientY-drag[1])*s;" +
+            "drag=[e.clientX,e.clientY];draw();};\n" +
+            "onwheel=e=>{const n=Math.max(0,Math.min(MAX,zoom+Math.sign(e.deltaY)));if(n==zoom)return;\n" +
+            " const dx=e.clientX-innerWidth/2,dz=e.clientY-innerHeight/2,s=1<<zoom,t=1<<n;" +
+            "x+=dx*(s-t);z+=dz*(s-t);zoom=n;draw();};\n" +
+            "onresize=draw;draw();\n</script></body></html>";
+
+}
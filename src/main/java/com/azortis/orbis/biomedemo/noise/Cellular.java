@@ -40,4 +40,9 @@ public class Cellular {
         return noise.getNoise(x, z);
     }
 
+    // Fills output[row * width + column] with noise(x + column * step, z + row * step), reusing the cells between samples.
+    public void noise(double x, double z, double step, int width, int height, double[] output){
+        noise.getNoiseGrid(x, z, step, width, height, output);
+    }
+
 }
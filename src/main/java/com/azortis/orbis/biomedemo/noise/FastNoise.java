@@ -98,6 +98,7 @@ public class FastNoise {
     private double mPingPongStength = 2.0f;
 
     private double mFractalBounding = 1 / 1.75f;
+    private double[] mFractalTail = fractalTail(3, 0.5f);
 
     private CellularDistanceFunction mCellularDistanceFunction = CellularDistanceFunction.EuclideanSq;
     private CellularReturnType mCellularReturnType = CellularReturnType.Distance;
@@ -291,6 +292,22 @@ public class FastNoise {
     /// Noise output bounded between -1...1
     /// </returns>
     public double getNoise(double x, double y) {
+        return getNoiseWithTolerance(x, y, 0);
+    }
+
+    /// <summary>
+    /// 2D noise at given position using current settings, skipping the fractal octaves
+    /// that can't move the result by more than the tolerance
+    /// </summary>
+    /// <remarks>
+    /// Every octave term is bounded by its amplitude, so once the amplitudes of the remaining octaves
+    /// add up to at most the tolerance they are skipped. The result stays within tolerance of getNoise(x, y).
+    /// Assumes a weighted strength between 0 and 1.
+    /// </remarks>
+    /// <returns>
+    /// Noise output bounded between -1...1
+    /// </returns>
+    public double getNoiseWithTolerance(double x, double y, double tolerance) {
         x *= mFrequency;
         y *= mFrequency;
 
@@ -312,11 +329,39 @@ public class FastNoise {
             default:
                 return genNoiseSingle(mSeed, x, y);
             case FBm:
-                return genFractalFBm(x, y);
+                return genFractalFBm(x, y, tolerance);
             case Ridged:
-                return genFractalRidged(x, y);
+                return genFractalRidged(x, y, tolerance);
             case PingPong:
-                return genFractalPingPong(x, y);
+                return genFractalPingPong(x, y, tolerance);
+        }
+    }
+
+    /// <summary>
+    /// 2D noise on a grid using current settings, output[row * width + column] is equal to
+    /// getNoise(x + column * step, y + row * step)
+    /// </summary>
+    /// <remarks>
+    /// Cellular noise without fractal sweeps the grid row by row, keeping the hashed feature points of the
+    /// 3 rows of cells around the current row, instead of hashing 9 cells for every sample.
+    /// Other settings are evaluated per sample.
+    /// </remarks>
+    public void getNoiseGrid(double x, double y, double step, int width, int height, double[] output) {
+        switch (mFractalType) {
+            case FBm:
+            case Ridged:
+            case PingPong:
+                break;
+            default:
+                if (mNoiseType == NoiseType.Cellular) {
+                    genCellularGrid(x, y, step, width, height, output);
+                    return;
+                }
+        }
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                output[row * width + column] = getNoise(x + column * step, y + row * step);
+            }
         }
     }
 
@@ -327,6 +372,20 @@ public class FastNoise {
     /// Noise output bounded between -1...1
     /// </returns>
     public double getNoise(double x, double y, double z) {
+        return getNoiseWithTolerance(x, y, z, 0);
+    }
+
+    /// <summary>
+    /// 3D noise at given position using current settings, skipping the fractal octaves
+    /// that can't move the result by more than the tolerance
+    /// </summary>
+    /// <remarks>
+    /// See getNoiseWithTolerance(x, y, tolerance)
+    /// </remarks>
+    /// <returns>
+    /// Noise output bounded between -1...1
+    /// </returns>
+    public double getNoiseWithTolerance(double x, double y, double z, double tolerance) {
         x *= mFrequency;
         y *= mFrequency;
         z *= mFrequency;
@@ -366,15 +425,139 @@ public class FastNoise {
             default:
                 return genNoiseSingle(mSeed, x, y, z);
             case FBm:
-                return genFractalFBm(x, y, z);
+                return genFractalFBm(x, y, z, tolerance);
             case Ridged:
-                return genFractalRidged(x, y, z);
+                return genFractalRidged(x, y, z, tolerance);
             case PingPong:
-                return genFractalPingPong(x, y, z);
+                return genFractalPingPong(x, y, z, tolerance);
         }
     }
 
 
+    /// <summary>
+    /// 2D noise at given position using current settings, evaluated in single precision
+    /// </summary>
+    /// <remarks>
+    /// OpenSimplex2, OpenSimplex2S and Cellular have a float implementation, other noise types are
+    /// evaluated in double precision and narrowed. Before frequency, the output deviates from getNoise(x, y) by
+    /// at most getMaxFloatDeviation(x, y), which is dominated by the precision of the input position.
+    /// </remarks>
+    /// <returns>
+    /// Noise output bounded between -1...1
+    /// </returns>
+    public float getNoiseFloat(float x, float y) {
+        switch (mNoiseType) {
+            case OpenSimplex2:
+            case OpenSimplex2S:
+            case Cellular:
+                break;
+            default:
+                return (float) getNoise(x, y);
+        }
+
+        x *= (float) mFrequency;
+        y *= (float) mFrequency;
+
+        switch (mNoiseType) {
+            case OpenSimplex2:
+            case OpenSimplex2S: {
+                final float SQRT3 = 1.7320508075688772935274463415059f;
+                final float F2 = 0.5f * (SQRT3 - 1);
+                float t = (x + y) * F2;
+                x += t;
+                y += t;
+            }
+            break;
+            default:
+                break;
+        }
+
+        switch (mFractalType) {
+            default:
+                return genNoiseSingleFloat(mSeed, x, y);
+            case FBm:
+                return genFractalFBmFloat(x, y);
+            case Ridged:
+                return genFractalRidgedFloat(x, y);
+            case PingPong:
+                return genFractalPingPongFloat(x, y);
+        }
+    }
+
+    /// <summary>
+    /// Upper bound for |getNoiseFloat(x, y) - getNoise(x, y)| at the given position
+    /// </summary>
+    /// <remarks>
+    /// Made up of the float rounding of the position after frequency and skew, times the steepest slope
+    /// of the noise type, plus the rounding error of the evaluation itself, summed over all octaves.
+    /// Assumes a weighted strength between 0 and 1. Returns infinity where no bound exists,
+    /// Cellular CellValue for example jumps at cell borders and other noise types aren't bounded here.
+    /// </remarks>
+    public double getMaxFloatDeviation(double x, double y) {
+        double slope;
+        switch (mNoiseType) {
+            case OpenSimplex2:
+                slope = FLOAT_SIMPLEX_SLOPE;
+                break;
+            case OpenSimplex2S:
+                slope = FLOAT_OPENSIMPLEX2S_SLOPE;
+                break;
+            case Cellular:
+                switch (mCellularReturnType) {
+                    case Distance:
+                    case Distance2:
+                    case Distance2Add:
+                    case Distance2Sub:
+                        slope = FLOAT_CELLULAR_SLOPE;
+                        break;
+                    default:
+                        return Double.POSITIVE_INFINITY;
+                }
+                break;
+            default:
+                return Double.POSITIVE_INFINITY;
+        }
+
+        double position = (fastAbs(x) + fastAbs(y)) * mFrequency;
+        double termSlope, weightSlope;
+        switch (mFractalType) {
+            case FBm:
+                termSlope = 1;
+                weightSlope = 0.5;
+                break;
+            case Ridged:
+                termSlope = 2;
+                weightSlope = 1;
+                break;
+            case PingPong:
+                termSlope = 2 * mPingPongStength;
+                weightSlope = mPingPongStength;
+                break;
+            default:
+                return slope * FLOAT_POSITION_ULPS * Math.ulp((float) position) + FLOAT_EVALUATION_ERROR;
+        }
+
+        // Every octave adds its own deviation, and through the weighting it scales all the octaves after it.
+        double gain = fastAbs(mGain);
+        double remaining = 0;
+        double amp = mFractalBounding;
+        for (int i = 0; i < mOctaves; i++) {
+            remaining += amp;
+            amp *= gain;
+        }
+
+        double deviation = 0;
+        amp = mFractalBounding;
+        for (int i = 0; i < mOctaves; i++) {
+            double octaveDeviation = slope * FLOAT_POSITION_ULPS * Math.ulp((float) position) + FLOAT_EVALUATION_ERROR;
+            remaining -= amp;
+            deviation += octaveDeviation * (amp * termSlope + fastAbs(mWeightedStrength) * weightSlope * remaining);
+            position *= mLacunarity;
+            amp *= gain;
+        }
+        return deviation;
+    }
+
     /// <summary>
     /// 2D warps the input position using current domain warp settings
     /// </summary>
@@ -600,6 +783,18 @@ public class FastNoise {
             amp *= gain;
         }
         mFractalBounding = 1 / ampFractal;
+        mFractalTail = fractalTail(mOctaves, mGain);
+    }
+
+    // tail[n] is the amplitude of the next n octaves, relative to the amplitude of the next one
+    private static double[] fractalTail(int octaves, double gain) {
+        double[] tail = new double[Math.max(octaves, 0) + 1];
+        double amp = 1;
+        for (int i = 1; i < tail.length; i++) {
+            tail[i] = tail[i - 1] + amp;
+            amp *= fastAbs(gain);
+        }
+        return tail;
     }
 
     // Hashing
@@ -753,12 +948,13 @@ public class FastNoise {
 
     // Fractal FBm
 
-    private double genFractalFBm(double x, double y) {
+    private double genFractalFBm(double x, double y, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = genNoiseSingle(seed++, x, y);
             sum += noise * amp;
             amp *= lerp(1.0f, fastMin(noise + 1, 2) * 0.5f, mWeightedStrength);
@@ -771,12 +967,13 @@ public class FastNoise {
         return sum;
     }
 
-    private double genFractalFBm(double x, double y, double z) {
+    private double genFractalFBm(double x, double y, double z, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = genNoiseSingle(seed++, x, y, z);
             sum += noise * amp;
             amp *= lerp(1.0f, (noise + 1) * 0.5f, mWeightedStrength);
@@ -793,12 +990,13 @@ public class FastNoise {
 
     // Fractal Ridged
 
-    private double genFractalRidged(double x, double y) {
+    private double genFractalRidged(double x, double y, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = fastAbs(genNoiseSingle(seed++, x, y));
             sum += (noise * -2 + 1) * amp;
             amp *= lerp(1.0f, 1 - noise, mWeightedStrength);
@@ -811,12 +1009,13 @@ public class FastNoise {
         return sum;
     }
 
-    private double genFractalRidged(double x, double y, double z) {
+    private double genFractalRidged(double x, double y, double z, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = fastAbs(genNoiseSingle(seed++, x, y, z));
             sum += (noise * -2 + 1) * amp;
             amp *= lerp(1.0f, 1 - noise, mWeightedStrength);
@@ -833,12 +1032,13 @@ public class FastNoise {
 
     // Fractal PingPong
 
-    private double genFractalPingPong(double x, double y) {
+    private double genFractalPingPong(double x, double y, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = pingPong((genNoiseSingle(seed++, x, y) + 1) * mPingPongStength);
             sum += (noise - 0.5f) * 2 * amp;
             amp *= lerp(1.0f, noise, mWeightedStrength);
@@ -851,12 +1051,13 @@ public class FastNoise {
         return sum;
     }
 
-    private double genFractalPingPong(double x, double y, double z) {
+    private double genFractalPingPong(double x, double y, double z, double tolerance) {
         long seed = mSeed;
         double sum = 0;
         double amp = mFractalBounding;
 
         for (int i = 0; i < mOctaves; i++) {
+            if (tolerance > 0 && fastAbs(amp) * mFractalTail[mOctaves - i] <= tolerance) break;
             double noise = pingPong((genNoiseSingle(seed++, x, y, z) + 1) * mPingPongStength);
             sum += (noise - 0.5f) * 2 * amp;
             amp *= lerp(1.0f, noise, mWeightedStrength);
@@ -1387,6 +1588,10 @@ public class FastNoise {
                 break;
         }
 
+        return cellularResult(distance0, distance1, closestHash);
+    }
+
+    private double cellularResult(double distance0, double distance1, int closestHash) {
         if (mCellularDistanceFunction == CellularDistanceFunction.Euclidean && mCellularReturnType != CellularReturnType.CellValue) {
             distance0 = fastSqrt(distance0);
 
@@ -1415,6 +1620,124 @@ public class FastNoise {
         }
     }
 
+    private void genCellularGrid(double x, double y, double step, int width, int height, double[] output) {
+        if (width <= 0 || height <= 0) return;
+
+        // Rounding is monotonic, so the outer samples of a row span all the cells it needs.
+        int xrFirst = fastRound(x * mFrequency);
+        int xrLast = fastRound((x + (width - 1) * step) * mFrequency);
+        int xrMin = Math.min(xrFirst, xrLast);
+        int columns = Math.max(xrFirst, xrLast) - xrMin + 3;
+
+        double cellularJitter = 0.43701595f * mCellularJitterModifier;
+
+        // Band of the rows yr - 1, yr and yr + 1, indexed by (row + bandStart) % 3
+        int[][] bandHashes = new int[3][columns];
+        double[][] bandJitterX = new double[3][columns];
+        double[][] bandJitterY = new double[3][columns];
+        int bandYr = 0;
+        int bandStart = 0;
+        boolean bandEmpty = true;
+
+        for (int row = 0; row < height; row++) {
+            double sy = (y + row * step) * mFrequency;
+            int yr = fastRound(sy);
+
+            if (bandEmpty || yr < bandYr - 1 || yr > bandYr + 1) {
+                for (int i = 0; i < 3; i++) {
+                    fillCellularBandRow(yr - 1 + i, xrMin, cellularJitter, bandHashes[i], bandJitterX[i], bandJitterY[i]);
+                }
+                bandStart = 0;
+                bandEmpty = false;
+            } else if (yr == bandYr + 1) {
+                // Drop the lowest row and hash the new upper row in its place
+                fillCellularBandRow(yr + 1, xrMin, cellularJitter, bandHashes[bandStart], bandJitterX[bandStart], bandJitterY[bandStart]);
+                bandStart = (bandStart + 1) % 3;
+            } else if (yr == bandYr - 1) {
+                bandStart = (bandStart + 2) % 3;
+                fillCellularBandRow(yr - 1, xrMin, cellularJitter, bandHashes[bandStart], bandJitterX[bandStart], bandJitterY[bandStart]);
+            }
+            bandYr = yr;
+
+            int[] hashes0 = bandHashes[bandStart];
+            int[] hashes1 = bandHashes[(bandStart + 1) % 3];
+            int[] hashes2 = bandHashes[(bandStart + 2) % 3];
+            double[] jitterX0 = bandJitterX[bandStart];
+            double[] jitterX1 = bandJitterX[(bandStart + 1) % 3];
+            double[] jitterX2 = bandJitterX[(bandStart + 2) % 3];
+            double[] jitterY0 = bandJitterY[bandStart];
+            double[] jitterY1 = bandJitterY[(bandStart + 1) % 3];
+            double[] jitterY2 = bandJitterY[(bandStart + 2) % 3];
+            double dy0 = (double) (yr - 1 - sy);
+            double dy1 = (double) (yr - sy);
+            double dy2 = (double) (yr + 1 - sy);
+
+            for (int column = 0; column < width; column++) {
+                double sx = (x + column * step) * mFrequency;
+                int xr = fastRound(sx);
+
+                double distance0 = Float.MAX_VALUE;
+                double distance1 = Float.MAX_VALUE;
+                int closestHash = 0;
+
+                // Same order as singleCellular, so ties resolve to the same cell
+                for (int xi = xr - 1, c = xr - xrMin; xi <= xr + 1; xi++, c++) {
+                    double dx = (double) (xi - sx);
+
+                    double newDistance = cellularDistance(dx + jitterX0[c], dy0 + jitterY0[c]);
+                    distance1 = fastMax(fastMin(distance1, newDistance), distance0);
+                    if (newDistance < distance0) {
+                        distance0 = newDistance;
+                        closestHash = hashes0[c];
+                    }
+
+                    newDistance = cellularDistance(dx + jitterX1[c], dy1 + jitterY1[c]);
+                    distance1 = fastMax(fastMin(distance1, newDistance), distance0);
+                    if (newDistance < distance0) {
+                        distance0 = newDistance;
+                        closestHash = hashes1[c];
+                    }
+
+                    newDistance = cellularDistance(dx + jitterX2[c], dy2 + jitterY2[c]);
+                    distance1 = fastMax(fastMin(distance1, newDistance), distance0);
+                    if (newDistance < distance0) {
+                        distance0 = newDistance;
+                        closestHash = hashes2[c];
+                    }
+                }
+
+                output[row * width + column] = cellularResult(distance0, distance1, closestHash);
+            }
+        }
+    }
+
+    private double cellularDistance(double vecX, double vecY) {
+        switch (mCellularDistanceFunction) {
+            default:
+            case Euclidean:
+            case EuclideanSq:
+                return vecX * vecX + vecY * vecY;
+            case Manhattan:
+                return fastAbs(vecX) + fastAbs(vecY);
+            case Hybrid:
+                return (fastAbs(vecX) + fastAbs(vecY)) + (vecX * vecX + vecY * vecY);
+        }
+    }
+
+    private void fillCellularBandRow(int yi, int xrMin, double cellularJitter, int[] hashes, double[] jitterX, double[] jitterY) {
+        int xPrimed = (xrMin - 1) * PrimeX;
+        int yPrimed = yi * PrimeY;
+        for (int c = 0; c < hashes.length; c++) {
+            int hash = hash(mSeed, xPrimed, yPrimed);
+            int idx = hash & (255 << 1);
+
+            hashes[c] = hash;
+            jitterX[c] = RandVecs2D[idx] * cellularJitter;
+            jitterY[c] = RandVecs2D[idx | 1] * cellularJitter;
+            xPrimed += PrimeX;
+        }
+    }
+
     private double singleCellular(long seed, double x, double y, double z) {
         int xr = fastRound(x);
         int yr = fastRound(y);
@@ -2376,6 +2699,357 @@ public class FastNoise {
         coord.z += vz * warpAmp;
     }
 
+    // Single precision 2D
+
+    // Steepest slope of each noise type, see OpenSimplex2S.MAX_SLOPE for how these are bounded.
+    private static final double FLOAT_SIMPLEX_SLOPE = 9.7;
+    private static final double FLOAT_OPENSIMPLEX2S_SLOPE = 6.5;
+    private static final double FLOAT_CELLULAR_SLOPE = 10;
+    // Rounding of the position in ulps, from narrowing, frequency and skew
+    private static final double FLOAT_POSITION_ULPS = 4;
+    // Rounding of the evaluation itself, measured at a few 1E-6
+    private static final double FLOAT_EVALUATION_ERROR = 1E-5;
+
+    private static final float[] Gradients2DFloat = toFloat(Gradients2D);
+    private static final float[] RandVecs2DFloat = toFloat(RandVecs2D);
+
+    private static float[] toFloat(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    private static float fastMin(float a, float b) {
+        return a < b ? a : b;
+    }
+
+    private static float fastMax(float a, float b) {
+        return a > b ? a : b;
+    }
+
+    private static float fastAbs(float f) {
+        return f < 0 ? -f : f;
+    }
+
+    private static int fastFloor(float f) {
+        return f >= 0 ? (int) f : (int) f - 1;
+    }
+
+    private static int fastRound(float f) {
+        return f >= 0 ? (int) (f + 0.5f) : (int) (f - 0.5f);
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + t * (b - a);
+    }
+
+    private static float pingPong(float t) {
+        t -= (int) (t * 0.5f) * 2;
+        return t < 1 ? t : 2 - t;
+    }
+
+    private static float gradCoordFloat(long seed, int xPrimed, int yPrimed, float xd, float yd) {
+        int hash = hash(seed, xPrimed, yPrimed);
+        hash ^= hash >> 15;
+        hash &= 127 << 1;
+
+        float xg = Gradients2DFloat[hash];
+        float yg = Gradients2DFloat[hash | 1];
+
+        return xd * xg + yd * yg;
+    }
+
+    private float genNoiseSingleFloat(long seed, float x, float y) {
+        switch (mNoiseType) {
+            case OpenSimplex2:
+                return singleSimplexFloat(seed, x, y);
+            case OpenSimplex2S:
+                return singleOpenSimplex2SFloat(seed, x, y);
+            case Cellular:
+                return singleCellularFloat(seed, x, y);
+            default:
+                return 0;
+        }
+    }
+
+    private float genFractalFBmFloat(float x, float y) {
+        long seed = mSeed;
+        float sum = 0;
+        float amp = (float) mFractalBounding;
+
+        for (int i = 0; i < mOctaves; i++) {
+            float noise = genNoiseSingleFloat(seed++, x, y);
+            sum += noise * amp;
+            amp *= lerp(1.0f, fastMin(noise + 1, 2) * 0.5f, (float) mWeightedStrength);
+
+            x *= (float) mLacunarity;
+            y *= (float) mLacunarity;
+            amp *= (float) mGain;
+        }
+
+        return sum;
+    }
+
+    private float genFractalRidgedFloat(float x, float y) {
+        long seed = mSeed;
+        float sum = 0;
+        float amp = (float) mFractalBounding;
+
+        for (int i = 0; i < mOctaves; i++) {
+            float noise = fastAbs(genNoiseSingleFloat(seed++, x, y));
+            sum += (noise * -2 + 1) * amp;
+            amp *= lerp(1.0f, 1 - noise, (float) mWeightedStrength);
+
+            x *= (float) mLacunarity;
+            y *= (float) mLacunarity;
+            amp *= (float) mGain;
+        }
+
+        return sum;
+    }
+
+    private float genFractalPingPongFloat(float x, float y) {
+        long seed = mSeed;
+        float sum = 0;
+        float amp = (float) mFractalBounding;
+
+        for (int i = 0; i < mOctaves; i++) {
+            float noise = pingPong((genNoiseSingleFloat(seed++, x, y) + 1) * (float) mPingPongStength);
+            sum += (noise - 0.5f) * 2 * amp;
+            amp *= lerp(1.0f, noise, (float) mWeightedStrength);
+
+            x *= (float) mLacunarity;
+            y *= (float) mLacunarity;
+            amp *= (float) mGain;
+        }
+
+        return sum;
+    }
+
+    private float singleSimplexFloat(long seed, float x, float y) {
+        final float SQRT3 = 1.7320508075688772935274463415059f;
+        final float G2 = (3 - SQRT3) / 6;
+
+        int i = fastFloor(x);
+        int j = fastFloor(y);
+        float xi = x - i;
+        float yi = y - j;
+
+        float t = (xi + yi) * G2;
+        float x0 = xi - t;
+        float y0 = yi - t;
+
+        i *= PrimeX;
+        j *= PrimeY;
+
+        float n0, n1, n2;
+
+        float a = 0.5f - x0 * x0 - y0 * y0;
+        if (a <= 0) n0 = 0;
+        else {
+            n0 = (a * a) * (a * a) * gradCoordFloat(seed, i, j, x0, y0);
+        }
+
+        float c = (2 * (1 - 2 * G2) * (1 / G2 - 2)) * t + ((-2 * (1 - 2 * G2) * (1 - 2 * G2)) + a);
+        if (c <= 0) n2 = 0;
+        else {
+            float x2 = x0 + (2 * G2 - 1);
+            float y2 = y0 + (2 * G2 - 1);
+            n2 = (c * c) * (c * c) * gradCoordFloat(seed, i + PrimeX, j + PrimeY, x2, y2);
+        }
+
+        if (y0 > x0) {
+            float x1 = x0 + G2;
+            float y1 = y0 + (G2 - 1);
+            float b = 0.5f - x1 * x1 - y1 * y1;
+            if (b <= 0) n1 = 0;
+            else {
+                n1 = (b * b) * (b * b) * gradCoordFloat(seed, i, j + PrimeY, x1, y1);
+            }
+        } else {
+            float x1 = x0 + (G2 - 1);
+            float y1 = y0 + G2;
+            float b = 0.5f - x1 * x1 - y1 * y1;
+            if (b <= 0) n1 = 0;
+            else {
+                n1 = (b * b) * (b * b) * gradCoordFloat(seed, i + PrimeX, j, x1, y1);
+            }
+        }
+
+        return (n0 + n1 + n2) * 99.83685446303647f;
+    }
+
+    private float singleOpenSimplex2SFloat(long seed, float x, float y) {
+        final float SQRT3 = 1.7320508075688772935274463415059f;
+        final float G2 = (3 - SQRT3) / 6;
+
+        int i = fastFloor(x);
+        int j = fastFloor(y);
+        float xi = x - i;
+        float yi = y - j;
+
+        i *= PrimeX;
+        j *= PrimeY;
+        int i1 = i + PrimeX;
+        int j1 = j + PrimeY;
+
+        float t = (xi + yi) * G2;
+        float x0 = xi - t;
+        float y0 = yi - t;
+
+        float a0 = (2.0f / 3.0f) - x0 * x0 - y0 * y0;
+        float value = (a0 * a0) * (a0 * a0) * gradCoordFloat(seed, i, j, x0, y0);
+
+        float a1 = (2 * (1 - 2 * G2) * (1 / G2 - 2)) * t + ((-2 * (1 - 2 * G2) * (1 - 2 * G2)) + a0);
+        float x1 = x0 - (1 - 2 * G2);
+        float y1 = y0 - (1 - 2 * G2);
+        value += (a1 * a1) * (a1 * a1) * gradCoordFloat(seed, i1, j1, x1, y1);
+
+        float xmyi = xi - yi;
+        if (t > G2) {
+            if (xi + xmyi > 1) {
+                float x2 = x0 + (3 * G2 - 2);
+                float y2 = y0 + (3 * G2 - 1);
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i + (PrimeX << 1), j + PrimeY, x2, y2);
+                }
+            } else {
+                float x2 = x0 + G2;
+                float y2 = y0 + (G2 - 1);
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i, j + PrimeY, x2, y2);
+                }
+            }
+
+            if (yi - xmyi > 1) {
+                float x3 = x0 + (3 * G2 - 1);
+                float y3 = y0 + (3 * G2 - 2);
+                float a3 = (2.0f / 3.0f) - x3 * x3 - y3 * y3;
+                if (a3 > 0) {
+                    value += (a3 * a3) * (a3 * a3) * gradCoordFloat(seed, i + PrimeX, j + (PrimeY << 1), x3, y3);
+                }
+            } else {
+                float x3 = x0 + (G2 - 1);
+                float y3 = y0 + G2;
+                float a3 = (2.0f / 3.0f) - x3 * x3 - y3 * y3;
+                if (a3 > 0) {
+                    value += (a3 * a3) * (a3 * a3) * gradCoordFloat(seed, i + PrimeX, j, x3, y3);
+                }
+            }
+        } else {
+            if (xi + xmyi < 0) {
+                float x2 = x0 + (1 - G2);
+                float y2 = y0 - G2;
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i - PrimeX, j, x2, y2);
+                }
+            } else {
+                float x2 = x0 + (G2 - 1);
+                float y2 = y0 + G2;
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i + PrimeX, j, x2, y2);
+                }
+            }
+
+            if (yi < xmyi) {
+                float x2 = x0 - G2;
+                float y2 = y0 - (G2 - 1);
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i, j - PrimeY, x2, y2);
+                }
+            } else {
+                float x2 = x0 + G2;
+                float y2 = y0 + (G2 - 1);
+                float a2 = (2.0f / 3.0f) - x2 * x2 - y2 * y2;
+                if (a2 > 0) {
+                    value += (a2 * a2) * (a2 * a2) * gradCoordFloat(seed, i, j + PrimeY, x2, y2);
+                }
+            }
+        }
+
+        return value * 18.24196194486065f;
+    }
+
+    private float singleCellularFloat(long seed, float x, float y) {
+        int xr = fastRound(x);
+        int yr = fastRound(y);
+
+        float distance0 = Float.MAX_VALUE;
+        float distance1 = Float.MAX_VALUE;
+        int closestHash = 0;
+
+        float cellularJitter = 0.43701595f * (float) mCellularJitterModifier;
+
+        int xPrimed = (xr - 1) * PrimeX;
+        int yPrimedBase = (yr - 1) * PrimeY;
+
+        for (int xi = xr - 1; xi <= xr + 1; xi++) {
+            int yPrimed = yPrimedBase;
+
+            for (int yi = yr - 1; yi <= yr + 1; yi++) {
+                int hash = hash(seed, xPrimed, yPrimed);
+                int idx = hash & (255 << 1);
+
+                float vecX = (xi - x) + RandVecs2DFloat[idx] * cellularJitter;
+                float vecY = (yi - y) + RandVecs2DFloat[idx | 1] * cellularJitter;
+
+                float newDistance;
+                switch (mCellularDistanceFunction) {
+                    default:
+                    case Euclidean:
+                    case EuclideanSq:
+                        newDistance = vecX * vecX + vecY * vecY;
+                        break;
+                    case Manhattan:
+                        newDistance = fastAbs(vecX) + fastAbs(vecY);
+                        break;
+                    case Hybrid:
+                        newDistance = (fastAbs(vecX) + fastAbs(vecY)) + (vecX * vecX + vecY * vecY);
+                        break;
+                }
+
+                distance1 = fastMax(fastMin(distance1, newDistance), distance0);
+                if (newDistance < distance0) {
+                    distance0 = newDistance;
+                    closestHash = hash;
+                }
+                yPrimed += PrimeY;
+            }
+            xPrimed += PrimeX;
+        }
+
+        if (mCellularDistanceFunction == CellularDistanceFunction.Euclidean && mCellularReturnType != CellularReturnType.CellValue) {
+            distance0 = (float) Math.sqrt(distance0);
+            distance1 = (float) Math.sqrt(distance1);
+        }
+
+        switch (mCellularReturnType) {
+            case CellValue:
+                return closestHash * (1 / 2147483648.0f);
+            case Distance:
+                return distance0 - 1;
+            case Distance2:
+                return distance1 - 1;
+            case Distance2Add:
+                return (distance1 + distance0) * 0.5f - 1;
+            case Distance2Sub:
+                return distance1 - distance0 - 1;
+            case Distance2Mul:
+                return distance1 * distance0 * 0.5f - 1;
+            case Distance2Div:
+                return distance0 / distance1 - 1;
+            default:
+                return 0;
+        }
+    }
+
     public static class Vector2 {
         public double x;
         public double y;
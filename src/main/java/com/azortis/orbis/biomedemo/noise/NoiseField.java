@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.noise;
+
+/**
+ * OpenSimplex2S noise for a single seed and zoom, with the values of lattice cells rounded to the precision and
+ * cached as ticks, so they're only evaluated once, no matter how many chunks or threads ask for them.
+ *
+ * The cache is direct mapped with a fixed amount of slots, a cell that hashes to an occupied slot evicts the previous
+ * one. Entries are immutable, so a race between threads at worst evaluates the same cell twice.
+ */
+public class NoiseField {
+
+    private final OpenSimplex2S noise;
+    private final int zoom;
+    private final double precision;
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param precision The steps per unit the noise is rounded to, at most 2^30 so the ticks fit an int.
+     */
+    public NoiseField(long seed, int zoom, boolean floatPrecision, double precision, int capacity) {
+        if (!(precision >= 1 && precision <= 1 << 30))
+            throw new IllegalArgumentException("Precision " + precision + " doesn't fit an int");
+        this.noise = new OpenSimplex2S(seed, floatPrecision);
+        this.zoom = zoom;
+        this.precision = precision;
+        int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.entries = new Entry[slots];
+        this.mask = slots - 1;
+    }
+
+    // The rounded noise of the lattice cell in ticks, x and z being the world position of its point.
+    public long getTicks(int latticeX, int latticeZ, double x, double z) {
+        final long key = ((long) latticeX << 32) | (latticeZ & 0xFFFFFFFFL);
+        final int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+
+        Entry entry = entries[slot];
+        if (entry != null && entry.key == key) return entry.ticks;
+
+        final int ticks = (int) Math.round(noise.noise(x / zoom, z / zoom) * precision);
+        entries[slot] = new Entry(key, ticks);
+        return ticks;
+    }
+
+    // Uncached noise at any world position.
+    public double getNoise(double x, double z) {
+        return noise.noise(x / zoom, z / zoom);
+    }
+
+    public double getMaxDeviation(double x, double z) {
+        return noise.getMaxDeviation(x / zoom, z / zoom);
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    private static class Entry {
+        final long key;
+        final int ticks;
+
+        Entry(long key, int ticks) {
+            this.key = key;
+            this.ticks = ticks;
+        }
+    }
+
+}
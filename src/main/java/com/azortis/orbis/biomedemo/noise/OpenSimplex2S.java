@@ -26,18 +26,36 @@ package com.azortis.orbis.biomedemo.noise;
 
 public class OpenSimplex2S {
 
+    // Upper bound for the gradient magnitude of the 2D noise, so |noise(a) - noise(b)| <= MAX_SLOPE * |a - b|.
+    // Every vertex in range contributes 18.24 * a^4 * (g . d) with a = 2/3 - |d|^2, the jacobian of which has
+    // a norm of at most 18.24 * a^3 * max(a, |a - 8|d|^2|). Summing that over all vertices that can be in range of a
+    // point peaks at ~6.41, the highest slope actually measured is ~4.6.
+    public static final double MAX_SLOPE = 6.5;
+
     private final FastNoise noise;
+    private final boolean floatPrecision;
 
     public OpenSimplex2S(long seed){
+        this(seed, false);
+    }
+
+    public OpenSimplex2S(long seed, boolean floatPrecision){
         noise = new FastNoise(seed);
         noise.setNoiseType(FastNoise.NoiseType.OpenSimplex2S);
         noise.setFrequency(1);
+        this.floatPrecision = floatPrecision;
     }
 
     public double noise(double x, double z){
+        if(floatPrecision)return noise.getNoiseFloat((float) x, (float) z);
         return noise.getNoise(x, z);
     }
 
+    // The maximum difference between noise(x, z) and the exact double precision noise.
+    public double getMaxDeviation(double x, double z){
+        return floatPrecision ? noise.getMaxFloatDeviation(x, z) : 0;
+    }
+
     public void setSeed(long seed){
         noise.setSeed(seed);
     }
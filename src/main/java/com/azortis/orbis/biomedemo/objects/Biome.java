@@ -32,6 +32,19 @@ public class Biome {
     private int id;
     private int r,g,b;
 
+    private transient Color color;
+
+    public Biome() {
+    }
+
+    public Biome(String name, int id, int r, int g, int b) {
+        this.name = name;
+        this.id = id;
+        this.r = r;
+        this.g = g;
+        this.b = b;
+    }
+
     public String getName() {
         return name;
     }
@@ -40,8 +53,17 @@ public class Biome {
         return id;
     }
 
+    /**
+     * @return The color packed the same way as {@link Color#getRGB()}.
+     */
+    public int getRgb() {
+        return 0xFF000000 | (r & 0xFF) << 16 | (g & 0xFF) << 8 | (b & 0xFF);
+    }
+
     public Color getColor(){
-        return new Color(r,g,b);
+        // Colors are immutable, so a racing thread at worst creates an equal one
+        if (color == null) color = new Color(r,g,b);
+        return color;
     }
 
 }
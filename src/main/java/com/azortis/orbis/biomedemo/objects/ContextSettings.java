@@ -30,6 +30,15 @@ public class ContextSettings {
     private boolean useShoreContext;
     private boolean useSeaContext;
 
+    public ContextSettings() {
+    }
+
+    public ContextSettings(boolean useLandContext, boolean useShoreContext, boolean useSeaContext) {
+        this.useLandContext = useLandContext;
+        this.useShoreContext = useShoreContext;
+        this.useSeaContext = useSeaContext;
+    }
+
     public boolean isUseLandContext() {
         return useLandContext;
     }
@@ -66,6 +66,30 @@ public class Dimension {
     public Dimension() {
     }
 
+    public Dimension(String name, long seed, long precision, long regionSeed, int regionZoom, long typeSeed, int typeZoom,
+                     double seaMin, double seaMax, double shoreMin, double shoreMax, double landMin, double landMax,
+                     double cellZoom, int cellPointContributionRadius, int typeContributionRadius,
+                     int regionContributionRadius, List<RegionLayer> regions) {
+        this.name = name;
+        this.seed = seed;
+        this.precision = precision;
+        this.regionSeed = regionSeed;
+        this.regionZoom = regionZoom;
+        this.typeSeed = typeSeed;
+        this.typeZoom = typeZoom;
+        this.seaMin = seaMin;
+        this.seaMax = seaMax;
+        this.shoreMin = shoreMin;
+        this.shoreMax = shoreMax;
+        this.landMin = landMin;
+        this.landMax = landMax;
+        this.cellZoom = cellZoom;
+        this.cellPointContributionRadius = cellPointContributionRadius;
+        this.typeContributionRadius = typeContributionRadius;
+        this.regionContributionRadius = regionContributionRadius;
+        this.regions = regions;
+    }
+
     public String getName() {
         return name;
     }
@@ -61,6 +61,23 @@ public class Region {
     public Region(){
     }
 
+    public Region(String name, ContextSettings contextSettings, long seed, int zoom,
+                  List<RegionLayer> landRegions, List<BiomeLayer> landBiomes,
+                  List<RegionLayer> shoreRegions, List<BiomeLayer> shoreBiomes,
+                  List<RegionLayer> seaRegions, List<BiomeLayer> seaBiomes, int contributionRadius) {
+        this.name = name;
+        this.contextSettings = contextSettings;
+        this.seed = seed;
+        this.zoom = zoom;
+        this.landRegions = landRegions;
+        this.landBiomes = landBiomes;
+        this.shoreRegions = shoreRegions;
+        this.shoreBiomes = shoreBiomes;
+        this.seaRegions = seaRegions;
+        this.seaBiomes = seaBiomes;
+        this.contributionRadius = contributionRadius;
+    }
+
     public String getName() {
         return name;
     }
@@ -24,7 +24,6 @@
 
 package com.azortis.orbis.biomedemo.objects.layer;
 
-import com.azortis.orbis.biomedemo.Registry;
 import com.azortis.orbis.biomedemo.objects.Biome;
 
 import java.util.List;
@@ -44,14 +43,39 @@ public class BiomeLayer implements Layer<Biome> {
     private int chance;
     private List<Context> contexts;
 
+    // Resolved by the link pass after loading
+    private transient Biome biome;
+
+    public BiomeLayer() {
+    }
+
+    public BiomeLayer(String biomeName, double min, double max, int index, int chance, List<Context> contexts) {
+        this.biomeName = biomeName;
+        this.min = min;
+        this.max = max;
+        this.index = index;
+        this.chance = chance;
+        this.contexts = contexts;
+    }
+
     @Override
     public String getLayerName() {
         return biomeName;
     }
 
+    @Override
+    public LayerKind getKind() {
+        return LayerKind.BIOME;
+    }
+
     @Override
     public Biome getLayerObject() {
-        return Registry.getBiome(biomeName);
+        if (biome == null) throw new IllegalStateException("Biome layer " + biomeName + " is not linked");
+        return biome;
+    }
+
+    public void link(Biome biome) {
+        this.biome = biome;
     }
 
     @Override
@@ -30,6 +30,15 @@ public class Context {
     private double min;
     private double max;
 
+    public Context() {
+    }
+
+    public Context(String context, double min, double max) {
+        this.context = context;
+        this.min = min;
+        this.max = max;
+    }
+
     public String getContext() {
         return context;
     }
@@ -30,6 +30,11 @@ public interface Layer<T> {
 
     String getLayerName();
 
+    LayerKind getKind();
+
+    /**
+     * @throws IllegalStateException if the layer hasn't been linked yet.
+     */
     T getLayerObject();
 
     double getMin();
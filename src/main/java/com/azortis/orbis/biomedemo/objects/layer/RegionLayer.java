@@ -24,7 +24,6 @@
 
 package com.azortis.orbis.biomedemo.objects.layer;
 
-import com.azortis.orbis.biomedemo.Registry;
 import com.azortis.orbis.biomedemo.objects.Region;
 
 import java.util.List;
@@ -44,14 +43,39 @@ public class RegionLayer implements Layer<Region> {
     private int chance;
     private List<Context> contexts;
 
+    // Resolved by the link pass after loading
+    private transient Region region;
+
+    public RegionLayer() {
+    }
+
+    public RegionLayer(String regionName, double min, double max, int index, int chance, List<Context> contexts) {
+        this.regionName = regionName;
+        this.min = min;
+        this.max = max;
+        this.index = index;
+        this.chance = chance;
+        this.contexts = contexts;
+    }
+
     @Override
     public String getLayerName() {
         return regionName;
     }
 
+    @Override
+    public LayerKind getKind() {
+        return LayerKind.REGION;
+    }
+
     @Override
     public Region getLayerObject() {
-        return Registry.getRegion(regionName);
+        if (region == null) throw new IllegalStateException("Region layer " + regionName + " is not linked");
+        return region;
+    }
+
+    public void link(Region region) {
+        this.region = region;
     }
 
     @Override
@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.noise.NoiseField;
+import com.azortis.orbis.biomedemo.noise.OpenSimplex2S;
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.objects.layer.LayerKind;
+import com.azortis.orbis.biomedemo.objects.layer.RegionLayer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the cell point of a biome closest to a position. Cells are evaluated in square sections, ring by ring around
+ * the section of the start, and the search ends once no unsearched section can hold a closer point than the best one.
+ *
+ * Before evaluating a section the type and initial region noise are bounded over it. If none of the types and initial
+ * regions it can have lead to the biome through the layer hierarchy, no cell in it can be that biome, so it's skipped
+ * without gathering a single point.
+ */
+public final class BiomeLocator {
+
+    public static final int SECTION_WIDTH = 128;
+
+    private static final double BOUND_EPSILON = 1.0E-9d;
+
+    private final CompiledDimension compiledDimension;
+    private final Dimension dimension;
+
+    public BiomeLocator(CompiledDimension compiledDimension) {
+        this.compiledDimension = compiledDimension;
+        this.dimension = compiledDimension.getDimension();
+    }
+
+    /**
+     * @param radius     How far from the start to search for the cell point.
+     * @param timeBudget In nanoseconds, once spent the closest point found so far is returned.
+     */
+    public Result locate(int biome, double startX, double startZ, double radius, long timeBudget) {
+        final long deadline = System.nanoTime() + timeBudget;
+        final boolean[][] reachable = getReachable(biome);
+        final int typeCount = reachable.length;
+        final NoiseFieldCache noiseCache = new NoiseFieldCache(dimension.getSeed(), 1.0d / dimension.getCellZoom(),
+                dimension.getPrecision(), false);
+        final NoiseField typeNoise = noiseCache.getField(dimension.getTypeSeed(), dimension.getTypeZoom());
+        final NoiseField regionNoise = noiseCache.getField(dimension.getRegionSeed(), dimension.getRegionZoom());
+        final int searchRadius = compiledDimension.getSearchRadius(0);
+
+        final int startSectionX = Math.floorDiv((int) Math.floor(startX), SECTION_WIDTH);
+        final int startSectionZ = Math.floorDiv((int) Math.floor(startZ), SECTION_WIDTH);
+        double bestDistanceSq = radius * radius;
+        double bestX = Double.NaN;
+        double bestZ = Double.NaN;
+        int searched = 0;
+        int pruned = 0;
+
+        for (int ring = 0; ; ring++) {
+            // Every section from this ring on is at least this far from the start.
+            final double minDistance = Math.max(0, ring - 1) * (double) SECTION_WIDTH;
+            if (minDistance * minDistance > bestDistanceSq) break;
+
+            List<int[]> sections = getRing(startSectionX, startSectionZ, ring);
+            sections.sort(Comparator.comparingDouble(section -> getDistanceSq(section, startX, startZ)));
+            for (int[] section : sections) {
+                if (getDistanceSq(section, startX, startZ) > bestDistanceSq) continue;
+                if (System.nanoTime() > deadline) {
+                    return new Result(bestX, bestZ, searched, pruned, true);
+                }
+                final int minX = section[0] * SECTION_WIDTH;
+                final int minZ = section[1] * SECTION_WIDTH;
+                if (!canContain(reachable, typeCount, typeNoise, regionNoise, minX, minZ)) {
+                    pruned++;
+                    continue;
+                }
+                searched++;
+                ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCache,
+                        SECTION_WIDTH, searchRadius, minX, minZ);
+                List<? extends GatheredPoint<?>> points = sampler.getCellPoints();
+                int[] biomes = sampler.getCellBiomes();
+                for (int i = 0; i < biomes.length; i++) {
+                    final GatheredPoint<?> point = points.get(i);
+                    // Points of neighbouring sections are left to those, so every point is judged once.
+                    if (biomes[i] != biome || point.getX() < minX || point.getX() >= minX + SECTION_WIDTH ||
+                            point.getZ() < minZ || point.getZ() >= minZ + SECTION_WIDTH) continue;
+                    final double dX = point.getX() - startX;
+                    final double dZ = point.getZ() - startZ;
+                    final double distanceSq = dX * dX + dZ * dZ;
+                    if (distanceSq <= bestDistanceSq) {
+                        bestDistanceSq = distanceSq;
+                        bestX = point.getX();
+                        bestZ = point.getZ();
+                    }
+                }
+            }
+        }
+        return new Result(bestX, bestZ, searched, pruned, false);
+    }
+
+    private boolean canContain(boolean[][] reachable, int typeCount, NoiseField typeNoise, NoiseField regionNoise,
+                               int minX, int minZ) {
+        final boolean[] types = getPossibleRanges(typeNoise, minX, minZ, compiledDimension.getTypeMinTicks(),
+                compiledDimension.getTypeMaxTicks());
+        final boolean[] regions = getPossibleRanges(regionNoise, minX, minZ, compiledDimension.getRegionMinTicks(),
+                compiledDimension.getRegionMaxTicks());
+        for (int type = 0; type < typeCount; type++) {
+            if (!types[type]) continue;
+            for (int region = 0; region < regions.length; region++) {
+                if (regions[region] && reachable[type][region]) return true;
+            }
+        }
+        return false;
+    }
+
+    // Which of the ranges the rounded noise of a point in the section may fall in, all of them if it may miss every
+    // range. A point outside every type range keeps the first type.
+    private boolean[] getPossibleRanges(NoiseField noise, int minX, int minZ, long[] mins, long[] maxs) {
+        final double centerX = minX + SECTION_WIDTH / 2.0d;
+        final double centerZ = minZ + SECTION_WIDTH / 2.0d;
+        final double radius = SECTION_WIDTH * Math.sqrt(0.5d);
+        final double value = noise.getNoise(centerX, centerZ);
+        final double maxDeviation = noise.getMaxDeviation(Math.abs(centerX) + radius, Math.abs(centerZ) + radius);
+        final double drift = OpenSimplex2S.MAX_SLOPE * radius / noise.getZoom() + 2 * maxDeviation + BOUND_EPSILON;
+        final long low = Ticks.round(value - drift, dimension.getPrecision());
+        final long high = Ticks.round(value + drift, dimension.getPrecision());
+
+        boolean[] possible = new boolean[mins.length];
+        for (int i = 0; i < mins.length; i++) {
+            possible[i] = high >= mins[i] && low <= maxs[i];
+        }
+        // Walk from the low end over ranges that continue each other, to find whether any value is left uncovered.
+        long covered = low - 1;
+        boolean extended = true;
+        while (covered < high && extended) {
+            extended = false;
+            for (int i = 0; i < mins.length; i++) {
+                if (mins[i] <= covered + 1 && maxs[i] > covered) {
+                    covered = maxs[i];
+                    extended = true;
+                }
+            }
+        }
+        if (covered < high) possible[0] = true;
+        return possible;
+    }
+
+    // For every type and initial region, whether some path of layers below it ends in the biome.
+    private boolean[][] getReachable(int biome) {
+        final List<RegionLayer> initialRegions = dimension.getRegions();
+        final int typeCount = compiledDimension.getTypeMinTicks().length;
+        boolean[][] reachable = new boolean[typeCount][initialRegions.size()];
+        for (int type = 0; type < typeCount; type++) {
+            Boolean[] memo = new Boolean[compiledDimension.getRegionCount()];
+            for (int i = 0; i < initialRegions.size(); i++) {
+                final int region = compiledDimension.getRegionIndex(initialRegions.get(i).getLayerObject());
+                reachable[type][i] = canReach(region, type, biome, memo);
+            }
+        }
+        return reachable;
+    }
+
+    private boolean canReach(int region, int type, int biome, Boolean[] memo) {
+        if (memo[region] != null) return memo[region];
+        // Guards against a region that contains itself, which can't reach anything through that path.
+        memo[region] = false;
+        boolean result = false;
+        for (Layer<?> layer : compiledDimension.getLayers(region, type)) {
+            if (layer.getKind() == LayerKind.BIOME) {
+                result = ((Biome) layer.getLayerObject()).getId() == biome;
+            } else {
+                result = canReach(compiledDimension.getRegionIndex((Region) layer.getLayerObject()), type, biome,
+                        memo);
+            }
+            if (result) break;
+        }
+        memo[region] = result;
+        return result;
+    }
+
+    private static List<int[]> getRing(int centerX, int centerZ, int ring) {
+        List<int[]> sections = new ArrayList<>(Math.max(1, ring * 8));
+        if (ring == 0) {
+            sections.add(new int[]{centerX, centerZ});
+            return sections;
+        }
+        for (int i = -ring; i < ring; i++) {
+            sections.add(new int[]{centerX + i, centerZ - ring});
+            sections.add(new int[]{centerX + ring, centerZ + i});
+            sections.add(new int[]{centerX - i, centerZ + ring});
+            sections.add(new int[]{centerX - ring, centerZ - i});
+        }
+        return sections;
+    }
+
+    private static double getDistanceSq(int[] section, double x, double z) {
+        final double minX = section[0] * (double) SECTION_WIDTH;
+        final double minZ = section[1] * (double) SECTION_WIDTH;
+        final double dX = Math.max(0, Math.max(minX - x, x - minX - SECTION_WIDTH));
+        final double dZ = Math.max(0, Math.max(minZ - z, z - minZ - SECTION_WIDTH));
+        return dX * dX + dZ * dZ;
+    }
+
+    public static final class Result {
+        private final double x;
+        private final double z;
+        private final int searchedSections;
+        private final int prunedSections;
+        private final boolean timedOut;
+
+        Result(double x, double z, int searchedSections, int prunedSections, boolean timedOut) {
+            this.x = x;
+            this.z = z;
+            this.searchedSections = searchedSections;
+            this.prunedSections = prunedSections;
+            this.timedOut = timedOut;
+        }
+
+        public boolean isFound() {
+            return !Double.isNaN(x);
+        }
+
+        /**
+         * @return The position of the closest cell point, NaN if none was found.
+         */
+        public double getX() {
+            return x;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public int getSearchedSections() {
+            return searchedSections;
+        }
+
+        public int getPrunedSections() {
+            return prunedSections;
+        }
+
+        /**
+         * @return Whether the time ran out, a point that was found may then not be the closest one.
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        @Override
+        public String toString() {
+            return (isFound() ? "found at " + x + ", " + z : "not found") + (timedOut ? " (timed out)" : "") +
+                    " after searching " + searchedSections + " sections and skipping " + prunedSections;
+        }
+    }
+
+}
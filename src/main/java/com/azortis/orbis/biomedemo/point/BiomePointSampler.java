@@ -30,6 +30,7 @@ import com.azortis.orbis.biomedemo.objects.Dimension;
 import com.azortis.orbis.biomedemo.objects.Region;
 import com.azortis.orbis.biomedemo.objects.layer.Context;
 import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.objects.layer.LayerKind;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -190,7 +191,7 @@ public class BiomePointSampler {
                     dimension.getPrecision()) / dimension.getPrecision();
             final LayerEval closestLayer = getLayer(layers, useContext, closestLayerNoise, closestPoint.getTag().contexts);
 
-            if(closestLayer.layer.getLayerObject() instanceof Region){
+            if(closestLayer.layer.getKind() == LayerKind.REGION){
                 closestPoint.getTag().layers.add(closestLayer);
                 for (GatheredPoint<PointEval> point : pointsToSearch){
                     final double layerNoise = Math.round(noise.noise(point.getX() / region.getZoom(), point.getZ() / region.getZoom()) *
@@ -0,0 +1,310 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.objects.Dimension;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers whether a rectangle of blocks contains some or only certain biomes, where the biome of a block is that of
+ * its closest cell point. Every area of {@link #AREA_SIZE} by {@link #AREA_SIZE} blocks is summarized by two sets of
+ * biome ids, made once from the cell points around it and kept.
+ *
+ * The biomes that may be in an area are those of every cell point that could be closest to one of its blocks, and
+ * the biomes that must be are those of the blocks its cell points lie on. A query over whole areas is answered from
+ * these sets alone, a rectangle that cuts through an area only samples the blocks it covers when the sets of that
+ * area can't decide it. The summaries can be written to a file, so pregeneration can build them once for servers.
+ */
+public final class BiomePresenceIndex {
+
+    public static final int AREA_SIZE = 256;
+
+    private static final int MAGIC = 0x4F425049; // OBPI
+    private static final int VERSION = 2;
+
+    private final CompiledDimension compiledDimension;
+    private final int searchRadius;
+    private final ThreadLocal<NoiseFieldCache> noiseCaches;
+    private final ConcurrentMap<Long, Summary> summaries = new ConcurrentHashMap<>();
+
+    private final AtomicLong sampledAreas = new AtomicLong();
+
+    public BiomePresenceIndex(CompiledDimension compiledDimension) {
+        final Dimension dimension = compiledDimension.getDimension();
+        this.compiledDimension = compiledDimension;
+        // Every block has a cell point within this distance, anything further can't be closest to it.
+        this.searchRadius = compiledDimension.getSearchRadius(0);
+        this.noiseCaches = ThreadLocal.withInitial(() -> new NoiseFieldCache(dimension.getSeed(),
+                1.0d / dimension.getCellZoom(), dimension.getPrecision(), false));
+    }
+
+    /**
+     * @param biomes The ids of the biomes to look for.
+     * @return Whether a block in the rectangle has one of the biomes, false for an empty rectangle.
+     */
+    public boolean containsAny(int minX, int minZ, int width, int height, BitSet biomes) {
+        if (width <= 0 || height <= 0) return false;
+        final int maxX = minX + width - 1;
+        final int maxZ = minZ + height - 1;
+        for (int areaZ = Math.floorDiv(minZ, AREA_SIZE); areaZ <= Math.floorDiv(maxZ, AREA_SIZE); areaZ++) {
+            for (int areaX = Math.floorDiv(minX, AREA_SIZE); areaX <= Math.floorDiv(maxX, AREA_SIZE); areaX++) {
+                Summary summary = getSummary(areaX, areaZ);
+                if (!summary.may.intersects(biomes)) continue;
+                if (isSubset(summary.may, biomes)) return true;
+                if (covers(minX, minZ, maxX, maxZ, areaX, areaZ) && summary.must.intersects(biomes)) return true;
+                if (sample(minX, minZ, maxX, maxZ, areaX, areaZ, biomes, true)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param biomes The ids of the allowed biomes.
+     * @return Whether every block in the rectangle has one of the biomes, true for an empty rectangle.
+     */
+    public boolean containsOnly(int minX, int minZ, int width, int height, BitSet biomes) {
+        if (width <= 0 || height <= 0) return true;
+        final int maxX = minX + width - 1;
+        final int maxZ = minZ + height - 1;
+        for (int areaZ = Math.floorDiv(minZ, AREA_SIZE); areaZ <= Math.floorDiv(maxZ, AREA_SIZE); areaZ++) {
+            for (int areaX = Math.floorDiv(minX, AREA_SIZE); areaX <= Math.floorDiv(maxX, AREA_SIZE); areaX++) {
+                Summary summary = getSummary(areaX, areaZ);
+                if (isSubset(summary.may, biomes)) continue;
+                if (covers(minX, minZ, maxX, maxZ, areaX, areaZ) && !isSubset(summary.must, biomes)) return false;
+                if (sample(minX, minZ, maxX, maxZ, areaX, areaZ, biomes, false)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Summarizes every area the rectangle overlaps on the threads of the pool, ahead of the queries.
+     */
+    public void build(ForkJoinPool pool, int minX, int minZ, int width, int height) {
+        final int maxAreaX = Math.floorDiv(minX + width - 1, AREA_SIZE);
+        final int maxAreaZ = Math.floorDiv(minZ + height - 1, AREA_SIZE);
+        List<long[]> areas = new ArrayList<>();
+        for (int areaZ = Math.floorDiv(minZ, AREA_SIZE); areaZ <= maxAreaZ; areaZ++) {
+            for (int areaX = Math.floorDiv(minX, AREA_SIZE); areaX <= maxAreaX; areaX++) {
+                areas.add(new long[]{areaX, areaZ});
+            }
+        }
+        pool.invoke(new BuildTask(areas, 0, areas.size()));
+    }
+
+    /**
+     * @return How many times a query had to sample the blocks of an area, because its summary couldn't decide.
+     */
+    public long getSampledAreas() {
+        return sampledAreas.get();
+    }
+
+    public int getSummaryCount() {
+        return summaries.size();
+    }
+
+    //
+    // Files
+    //
+
+    /**
+     * Writes every summary made so far. The file is replaced as a whole, so a reader never sees half of it.
+     */
+    public void write(File indexFile) throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(compiledDimension.getFingerprint());
+            List<Map.Entry<Long, Summary>> entries = new ArrayList<>(summaries.entrySet());
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, Summary> entry : entries) {
+                out.writeLong(entry.getKey());
+                writeBits(out, entry.getValue().may);
+                writeBits(out, entry.getValue().must);
+            }
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the summaries of a file written for the same config, see {@link CompiledDimension#getFingerprint()}.
+     *
+     * @return False if the file was written for another config or version, its summaries are stale and not added.
+     * @throws IOException if the file can't be read, or isn't a biome presence index.
+     */
+    public boolean load(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a biome presence index: " + indexFile);
+            if (in.readInt() != VERSION || in.readLong() != compiledDimension.getFingerprint()) return false;
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final long key = in.readLong();
+                summaries.putIfAbsent(key, new Summary(readBits(in), readBits(in)));
+            }
+        }
+        return true;
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeShort(words.length);
+        for (long word : words) out.writeLong(word);
+    }
+
+    private static BitSet readBits(DataInputStream in) throws IOException {
+        long[] words = new long[in.readUnsignedShort()];
+        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+        return BitSet.valueOf(words);
+    }
+
+    //
+    // Summaries
+    //
+
+    private Summary getSummary(int areaX, int areaZ) {
+        final long key = ((long) areaX << 32) | (areaZ & 0xFFFFFFFFL);
+        Summary summary = summaries.get(key);
+        if (summary != null) return summary;
+        // Made outside the map, threads asking for the same area at once may both make it.
+        summary = summarize(areaX * AREA_SIZE, areaZ * AREA_SIZE);
+        Summary existing = summaries.putIfAbsent(key, summary);
+        return existing != null ? existing : summary;
+    }
+
+    private Summary summarize(int minX, int minZ) {
+        ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCaches.get(), AREA_SIZE,
+                searchRadius, minX, minZ);
+        return summarize(sampler, minX, minZ, minX + AREA_SIZE - 1, minZ + AREA_SIZE - 1);
+    }
+
+    // The sampler has to cover the rectangle, the points it gathered around it all go into the biomes that may be.
+    private static Summary summarize(ChunkBiomePointSampler sampler, int minX, int minZ, int maxX, int maxZ) {
+        List<? extends GatheredPoint<?>> points = sampler.getCellPoints();
+        int[] biomes = sampler.getCellBiomes();
+        BitSet may = new BitSet();
+        BitSet must = new BitSet();
+        for (int i = 0; i < biomes.length; i++) {
+            may.set(biomes[i]);
+            final GatheredPoint<?> point = points.get(i);
+            final int blockX = (int) Math.floor(point.getX());
+            final int blockZ = (int) Math.floor(point.getZ());
+            if (blockX >= minX && blockX <= maxX && blockZ >= minZ && blockZ <= maxZ) {
+                must.set(sampler.getBiomeAt(blockX, blockZ));
+            }
+        }
+        return new Summary(may, must);
+    }
+
+    /**
+     * @return Whether a block in the part of the rectangle in the area has a biome in the set if wanted, or one that
+     * isn't in it if not.
+     */
+    private boolean sample(int minX, int minZ, int maxX, int maxZ, int areaX, int areaZ, BitSet biomes,
+                           boolean wanted) {
+        sampledAreas.incrementAndGet();
+        final int fromX = Math.max(minX, areaX * AREA_SIZE);
+        final int fromZ = Math.max(minZ, areaZ * AREA_SIZE);
+        final int toX = Math.min(maxX, areaX * AREA_SIZE + AREA_SIZE - 1);
+        final int toZ = Math.min(maxZ, areaZ * AREA_SIZE + AREA_SIZE - 1);
+        final int width = Math.max(toX - fromX, toZ - fromZ) + 1;
+        ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCaches.get(), width,
+                searchRadius, fromX, fromZ);
+        // The points around just this part often decide it, before going over every block.
+        Summary part = summarize(sampler, fromX, fromZ, toX, toZ);
+        if (wanted) {
+            if (!part.may.intersects(biomes)) return false;
+            if (part.must.intersects(biomes)) return true;
+        } else {
+            if (isSubset(part.may, biomes)) return false;
+            if (!isSubset(part.must, biomes)) return true;
+        }
+        for (int z = fromZ; z <= toZ; z++) {
+            for (int x = fromX; x <= toX; x++) {
+                if (biomes.get(sampler.getBiomeAt(x, z)) == wanted) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean covers(int minX, int minZ, int maxX, int maxZ, int areaX, int areaZ) {
+        return minX <= areaX * AREA_SIZE && minZ <= areaZ * AREA_SIZE &&
+                maxX >= areaX * AREA_SIZE + AREA_SIZE - 1 && maxZ >= areaZ * AREA_SIZE + AREA_SIZE - 1;
+    }
+
+    private static boolean isSubset(BitSet bits, BitSet of) {
+        BitSet outside = (BitSet) bits.clone();
+        outside.andNot(of);
+        return outside.isEmpty();
+    }
+
+    private static final class Summary {
+        final BitSet may;
+        final BitSet must;
+
+        Summary(BitSet may, BitSet must) {
+            this.may = may;
+            this.must = must;
+        }
+    }
+
+    // Summarizes a range of the areas, split in halves until single areas remain.
+    private class BuildTask extends RecursiveAction {
+        private final List<long[]> areas;
+        private final int start;
+        private final int end;
+
+        BuildTask(List<long[]> areas, int start, int end) {
+            this.areas = areas;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (end > start) getSummary((int) areas.get(start)[0], (int) areas.get(start)[1]);
+            } else {
+                final int middle = (start + end) >>> 1;
+                invokeAll(new BuildTask(areas, start, middle), new BuildTask(areas, middle, end));
+            }
+        }
+    }
+
+}
@@ -24,36 +24,96 @@
 
 package com.azortis.orbis.biomedemo.point;
 
+import com.azortis.orbis.biomedemo.noise.NoiseField;
 import com.azortis.orbis.biomedemo.noise.OpenSimplex2S;
 import com.azortis.orbis.biomedemo.objects.Biome;
 import com.azortis.orbis.biomedemo.objects.Dimension;
 import com.azortis.orbis.biomedemo.objects.Region;
 import com.azortis.orbis.biomedemo.objects.layer.Context;
 import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.objects.layer.LayerKind;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
 public class ChunkBiomePointSampler {
 
-    private final static double MIN_NOISE = -1.0d;
-    private final static double MAX_NOISE = 1.0d;
+    // The amount of probes per axis used when the chunk center alone can't bound the noise over the search radius.
+    private final static int BOUND_PROBES = 3;
+    private final static double BOUND_EPSILON = 1.0E-9d;
+
+    // Fields that only live as long as a single chunk don't need to hold more than its points.
+    private final static int CHUNK_FIELD_CAPACITY = 1 << 10;
 
     private final Dimension dimension;
+    private final CompiledDimension compiledDimension;
+    private final LayerSelector selector;
+    private final int chunkCenterX;
+    private final int chunkCenterZ;
     private final int maxSearchRadius;
+    private final NoiseFieldCache noiseCache;
 
     private final List<GatheredPoint<BiomeEval>> chunkPoints;
     private final List<GatheredPoint<PointEval>> allPoints;
 
-
+    /**
+     * @deprecated Flattens the dimension again for every chunk, use
+     * {@link #ChunkBiomePointSampler(CompiledDimension, NoiseFieldCache, int, int, int, int)}.
+     */
+    @Deprecated
     public ChunkBiomePointSampler(Dimension dimension, double cellFrequency, int chunkWidth, int searchRadius, int chunkX, int chunkZ) {
+        this(dimension, cellFrequency, chunkWidth, searchRadius, chunkX, chunkZ, false);
+    }
+
+    /**
+     * @param floatPrecision Evaluate the noise in single precision, see {@link FloatPrecisionValidator} for
+     *                       how much that changes the outcome.
+     * @deprecated Flattens the dimension again for every chunk, use
+     * {@link #ChunkBiomePointSampler(CompiledDimension, NoiseFieldCache, int, int, int, int)} with a cache in single
+     * precision.
+     */
+    @Deprecated
+    public ChunkBiomePointSampler(Dimension dimension, double cellFrequency, int chunkWidth, int searchRadius, int chunkX,
+                                  int chunkZ, boolean floatPrecision) {
+        this(dimension, new NoiseFieldCache(dimension.getSeed(), cellFrequency, dimension.getPrecision(),
+                floatPrecision, CHUNK_FIELD_CAPACITY),
+                chunkWidth, searchRadius, chunkX, chunkZ);
+    }
+
+    /**
+     * @param noiseCache The noise fields to sample from, shared between chunks so neighbouring chunks don't
+     *                   evaluate the same cells again. Determines the cell frequency and precision.
+     * @deprecated Flattens the dimension again for every chunk, compile it once with
+     * {@link CompiledDimension#interpret(Dimension)} and use
+     * {@link #ChunkBiomePointSampler(CompiledDimension, NoiseFieldCache, int, int, int, int)}.
+     */
+    @Deprecated
+    public ChunkBiomePointSampler(Dimension dimension, NoiseFieldCache noiseCache, int chunkWidth, int searchRadius,
+                                  int chunkX, int chunkZ) {
+        this(CompiledDimension.interpret(dimension), noiseCache, chunkWidth, searchRadius, chunkX, chunkZ);
+    }
+
+    /**
+     * @param compiledDimension The dimension with its layer hierarchy flattened, made once and shared between chunks.
+     */
+    public ChunkBiomePointSampler(CompiledDimension compiledDimension, NoiseFieldCache noiseCache, int chunkWidth,
+                                  int searchRadius, int chunkX, int chunkZ) {
+        final Dimension dimension = compiledDimension.getDimension();
+        if(noiseCache.getPointSeed() != dimension.getSeed())
+            throw new IllegalArgumentException("Noise cache was made for point seed " + noiseCache.getPointSeed());
+        if(noiseCache.getPrecision() != dimension.getPrecision())
+            throw new IllegalArgumentException("Noise cache was made for precision " + noiseCache.getPrecision());
         this.dimension = dimension;
+        this.compiledDimension = compiledDimension;
+        this.selector = compiledDimension.getSelector();
+        this.noiseCache = noiseCache;
+        final double cellFrequency = noiseCache.getCellFrequency();
 
         // Collect all the points that may be searched for biome evaluation.
         ChunkPointGatherer<BiomeEval> chunkPointGatherer = new ChunkPointGatherer<>(cellFrequency, searchRadius, chunkWidth);
 
-        final int chunkCenterX = chunkX + chunkWidth / 2;
-        final int chunkCenterZ = chunkZ + chunkWidth / 2;
+        chunkCenterX = chunkX + chunkWidth / 2;
+        chunkCenterZ = chunkZ + chunkWidth / 2;
         chunkPoints = chunkPointGatherer.getPointsFromChunkCenter(dimension.getSeed(), chunkCenterX, chunkCenterZ);
 
         // Determine the full search radius for the unfiltered point gatherer, by sampling the furthest point from chunk
@@ -71,7 +131,7 @@ public class ChunkBiomePointSampler {
 
         // Only use square root once!
         maxSearchRadius = (int) Math.round(Math.sqrt(furthestDistanceSq));
-        int maxCellRadius = dimension.getCellPointContributionRadius() + maxSearchRadius;
+        int maxCellRadius = compiledDimension.getCellRadius() + maxSearchRadius;
 
         // Get all points that are needed for properly sampling the points for the biome evaluation.
         UnfilteredPointGatherer<PointEval> pointGatherer = new UnfilteredPointGatherer<>(cellFrequency, maxCellRadius);
@@ -129,38 +189,24 @@ public class ChunkBiomePointSampler {
 
     private void calculateRegion(Layer<?> regionLayer, int iteration){
         Region region = (Region) regionLayer.getLayerObject();
-        final OpenSimplex2S noise = new OpenSimplex2S(region.getSeed());
+        final int regionIndex = compiledDimension.getRegionIndex(region);
+        final NoiseField noise = noiseCache.getField(region.getSeed(), region.getZoom());
         int maxRegionRadius = region.getContributionRadius() + maxSearchRadius;
         final int maxRegionRadiusSq = maxRegionRadius * maxRegionRadius; // Add 8 for padding
+        int maxEvaluationRadius = compiledDimension.getRegionRadius(regionIndex) + maxSearchRadius;
+        final int maxEvaluationRadiusSq = maxEvaluationRadius * maxEvaluationRadius;
 
         for (GatheredPoint<PointEval> point : allPoints){
-            if(iteration == point.getTag().layers.size() && point.getTag().distanceSq <= maxRegionRadiusSq &&
+            if(iteration == point.getTag().layers.size() && point.getTag().distanceSq <= maxEvaluationRadiusSq &&
                     point.getTag().layers.get(iteration - 1).layer == regionLayer){
-                final double regionNoise = getNoiseRounded(noise, point.getX(), point.getZ(), region.getZoom());
-
-                boolean useContext = false;
-                List<Layer<?>> layers = new ArrayList<>();
-                switch (point.getTag().type){
-                    case 0:
-                        useContext = region.getContextSettings().isUseLandContext();
-                        layers.addAll(region.getLandRegions());
-                        layers.addAll(region.getLandBiomes());
-                        break;
-                    case 1:
-                        useContext = region.getContextSettings().isUseShoreContext();
-                        layers.addAll(region.getShoreRegions());
-                        layers.addAll(region.getShoreBiomes());
-                        break;
-                    case 2:
-                        useContext = region.getContextSettings().isUseSeaContext();
-                        layers.addAll(region.getSeaRegions());
-                        layers.addAll(region.getSeaBiomes());
-                }
+                final long regionNoise = getNoiseTicks(noise, point);
 
-                LayerEval layer = getLayer(layers, useContext, regionNoise, point.getTag().contexts);
+                LayerEval layer = getLayer(regionIndex, point.getTag().type, regionNoise, point.getTag().contexts);
                 point.getTag().layers.add(layer);
-                double layerStrength = getStrength(layer.min, layer.max, regionNoise);
-                point.getTag().contexts.put(layer.layer.getLayerName(), layerStrength);
+                // Nothing below a biome or a context free region reads its strength
+                if(compiledDimension.isContextConsumed(layer.layer)){
+                    point.getTag().contexts.put(layer.layer.getLayerName(), layer.strengths.get(regionNoise));
+                }
             }
         }
 
@@ -180,11 +226,12 @@ public class ChunkBiomePointSampler {
                 if (iteration < point.getTag().layers.size()) {
                     final Layer<?> layer = point.getTag().layers.get(iteration).layer;
                     if (allRegionLayers.contains(layer)) {
-                        if (layer.getLayerObject() instanceof Biome) {
+                        if (layer.getKind() == LayerKind.BIOME) {
                             chunkPoint.getTag().biome = ((Biome) layer.getLayerObject()).getId();
                             chunkPoint.getTag().biomeFound = true;
                             continue;
                         }
+                        if (!compiledDimension.isContextConsumed(layer)) continue;
 
                         double closestDistanceSq = Double.MAX_VALUE;
                         for (GatheredPoint<PointEval> point1 : allPoints) {
@@ -200,9 +247,8 @@ public class ChunkBiomePointSampler {
                             }
                         }
 
-                        double layerStrength = point.getTag().contexts.get(layer.getLayerName()) * (closestDistanceSq / maxRegionContributionSq);
-                        layerStrength = Math.round(Math.min(1.00d, layerStrength) * dimension.getPrecision()) / dimension.getPrecision();
-                        point.getTag().contexts.replace(layer.getLayerName(), layerStrength);
+                        double layerStrength = toValue(point.getTag().contexts.get(layer.getLayerName())) * (closestDistanceSq / maxRegionContributionSq);
+                        point.getTag().contexts.replace(layer.getLayerName(), toTicks(Math.min(1.00d, layerStrength)));
                     }
                 }
             }
@@ -210,41 +256,43 @@ public class ChunkBiomePointSampler {
     }
 
     private void assignTypes(){
-        final OpenSimplex2S noise = new OpenSimplex2S(dimension.getTypeSeed());
+        final NoiseField noise = noiseCache.getField(dimension.getTypeSeed(), dimension.getTypeZoom());
         int maxTypeRadius = dimension.getTypeContributionRadius() + maxSearchRadius;
         final int maxTypeRadiusSq = maxTypeRadius * maxTypeRadius;
+        int maxEvaluationRadius = compiledDimension.getTypeRadius() + maxSearchRadius;
+        final int maxEvaluationRadiusSq = maxEvaluationRadius * maxEvaluationRadius;
+
+        // If every point in range is bound to have the same type, there is no type border to search for.
+        final int uniformType = getUniformRange(noise, maxEvaluationRadius, compiledDimension.getTypeMinTicks(),
+                compiledDimension.getTypeMaxTicks());
+        final boolean typeConsumed = compiledDimension.isTypeConsumed();
 
         for (GatheredPoint<PointEval> point : allPoints){
-            if(point.getTag().distanceSq <= maxTypeRadiusSq){
-                final double typeNoise = getNoiseRounded(noise, point.getX(), point.getZ(), dimension.getTypeZoom());
-
-                double min = -1.0;
-                double max = 1.0;
-                if (typeNoise >= dimension.getLandMin() && typeNoise <= dimension.getLandMax()) {
-                    point.getTag().type = 0;
-                    min = dimension.getLandMin();
-                    max = dimension.getLandMax();
-                } else if (typeNoise >= dimension.getShoreMin() && typeNoise <= dimension.getShoreMax()) {
-                    point.getTag().type = 1;
-                    min = dimension.getShoreMin();
-                    max = dimension.getShoreMax();
-                } else if (typeNoise >= dimension.getSeaMin() && typeNoise <= dimension.getSeaMax()) {
-                    point.getTag().type = 2;
-                    min = dimension.getSeaMin();
-                    max = dimension.getSeaMax();
+            if(point.getTag().distanceSq <= maxEvaluationRadiusSq){
+                // Without a type context the noise is only needed to pick the type.
+                if(uniformType != -1 && !typeConsumed){
+                    point.getTag().type = uniformType;
+                    continue;
                 }
+                final long typeNoise = getNoiseTicks(noise, point);
 
-                double typeStrength = getStrength(min, max, typeNoise);
-                point.getTag().contexts.put("type", typeStrength);
+                final int type = uniformType != -1 ? uniformType : selector.selectType(typeNoise);
+                if (type != -1) point.getTag().type = type;
+
+                if(typeConsumed){
+                    point.getTag().contexts.put("type", compiledDimension.getTypeStrengths(type).get(typeNoise));
+                }
             }
         }
+        if(!typeConsumed)return;
 
         final int maxTypeContributionSq = dimension.getTypeContributionRadius() * dimension.getTypeContributionRadius();
+        final List<GatheredPoint<PointEval>> borderPoints = uniformType != -1 ? Collections.emptyList() : allPoints;
         for (GatheredPoint<BiomeEval> chunkPoint : chunkPoints){
             GatheredPoint<PointEval> point = chunkPoint.getTag().evaluationPoint;
 
             double closestDistanceSq = Double.MAX_VALUE;
-            for (GatheredPoint<PointEval> point1 : allPoints){
+            for (GatheredPoint<PointEval> point1 : borderPoints){
                 if(point1.getTag().distanceSq <= maxTypeRadiusSq && point1.getTag().type != point.getTag().type){
                     double dX = point.getX() - point1.getX();
                     double dZ = point.getZ() - point1.getZ();
@@ -254,36 +302,54 @@ public class ChunkBiomePointSampler {
                 }
             }
 
-            double typeStrength = point.getTag().contexts.get("type") * (closestDistanceSq / maxTypeContributionSq);
-            typeStrength = Math.round(Math.min(1.00d, typeStrength) * dimension.getPrecision()) / dimension.getPrecision();
-            point.getTag().contexts.replace("type", typeStrength);
+            double typeStrength = toValue(point.getTag().contexts.get("type")) * (closestDistanceSq / maxTypeContributionSq);
+            point.getTag().contexts.replace("type", toTicks(Math.min(1.00d, typeStrength)));
         }
     }
 
     private void assignInitialRegions(){
-        final OpenSimplex2S noise = new OpenSimplex2S(dimension.getRegionSeed());
+        final NoiseField noise = noiseCache.getField(dimension.getRegionSeed(), dimension.getRegionZoom());
         int maxRegionRadius = dimension.getRegionContributionRadius() + maxSearchRadius;
         final int maxRegionRadiusSq = maxRegionRadius * maxRegionRadius;
+        int maxEvaluationRadius = compiledDimension.getInitialRegionRadius() + maxSearchRadius;
+        final int maxEvaluationRadiusSq = maxEvaluationRadius * maxEvaluationRadius;
         final List<Layer<?>> regionLayers = new ArrayList<>(dimension.getRegions());
 
-        for(GatheredPoint<PointEval> point : allPoints){
-            if(point.getTag().distanceSq <= maxRegionRadiusSq){
-                final double regionNoise = getNoiseRounded(noise, point.getX(), point.getZ(), dimension.getRegionZoom());
-                final Layer<?> layer = getLayer(regionLayers, regionNoise);
+        final int uniformRegion = getUniformRange(noise, maxEvaluationRadius, compiledDimension.getRegionMinTicks(),
+                compiledDimension.getRegionMaxTicks());
+        final Layer<?> uniformLayer = uniformRegion != -1 ? regionLayers.get(uniformRegion) : null;
 
-                point.getTag().layers.add(new LayerEval(layer, regionNoise, layer.getMin(), layer.getMax()));
-                double regionStrength = getStrength(layer.getMin(), layer.getMax(), regionNoise);
-                point.getTag().contexts.put(layer.getLayerName(), regionStrength);
+        final boolean uniformConsumed = uniformLayer != null && compiledDimension.isContextConsumed(uniformLayer);
+
+        for(GatheredPoint<PointEval> point : allPoints){
+            if(point.getTag().distanceSq <= maxEvaluationRadiusSq){
+                // Without a strength to compute the noise is only needed to pick the region.
+                if(uniformLayer != null && !uniformConsumed){
+                    point.getTag().layers.add(new LayerEval(uniformLayer,
+                            compiledDimension.getRegionStrengths(uniformRegion)));
+                    continue;
+                }
+                final long regionNoise = getNoiseTicks(noise, point);
+                final int region = uniformLayer != null ? uniformRegion : selector.selectInitialRegion(regionNoise);
+                final Layer<?> layer = regionLayers.get(region);
+                final StrengthTable strengths = compiledDimension.getRegionStrengths(region);
+
+                point.getTag().layers.add(new LayerEval(layer, strengths));
+                if(compiledDimension.isContextConsumed(layer)){
+                    point.getTag().contexts.put(layer.getLayerName(), strengths.get(regionNoise));
+                }
             }
         }
 
         final int maxRegionContributionSq = dimension.getRegionContributionRadius() * dimension.getRegionContributionRadius();
+        final List<GatheredPoint<PointEval>> borderPoints = uniformLayer != null ? Collections.emptyList() : allPoints;
         for (GatheredPoint<BiomeEval> chunkPoint : chunkPoints){
             GatheredPoint<PointEval> point = chunkPoint.getTag().evaluationPoint;
             Layer<?> initialLayer = point.getTag().layers.get(0).layer;
+            if(!compiledDimension.isContextConsumed(initialLayer))continue;
 
             double closestDistanceSq = Double.MAX_VALUE;
-            for (GatheredPoint<PointEval> point1 : allPoints){
+            for (GatheredPoint<PointEval> point1 : borderPoints){
                 if(point1.getTag().distanceSq <= maxRegionRadiusSq && point1.getTag().layers.get(0).layer != initialLayer){
                     double dX = point.getX() - point1.getX();
                     double dZ = point.getZ() - point1.getZ();
@@ -293,92 +359,102 @@ public class ChunkBiomePointSampler {
                 }
             }
 
-            double regionStrength = point.getTag().contexts.get(initialLayer.getLayerName()) *
+            double regionStrength = toValue(point.getTag().contexts.get(initialLayer.getLayerName())) *
                     (closestDistanceSq / maxRegionContributionSq);
-            regionStrength = Math.round(Math.min(1.00d, regionStrength) * dimension.getPrecision()) / dimension.getPrecision();
-            point.getTag().contexts.replace(initialLayer.getLayerName(), regionStrength);
+            point.getTag().contexts.replace(initialLayer.getLayerName(), toTicks(Math.min(1.00d, regionStrength)));
         }
 
     }
 
-    private double getNoiseRounded(OpenSimplex2S noise, double x, double z, int zoom){
-        return Math.round(noise.noise(x / zoom, z / zoom) * dimension.getPrecision()) / dimension.getPrecision();
+    private long getNoiseTicks(NoiseField noise, GatheredPoint<?> point){
+        return noise.getTicks(point.getLatticeX(), point.getLatticeZ(), point.getX(), point.getZ());
+    }
+
+    private long toTicks(double value){
+        return Ticks.round(value, dimension.getPrecision());
+    }
+
+    private double toValue(long ticks){
+        return Ticks.toValue(ticks, dimension.getPrecision());
     }
 
     //
-    // Strength/context methods
+    // Noise bound methods
     //
 
-    private double getStrength(double min, double max, double value) {
-        if (value < min || value > max) return 0;
-        if (min == MIN_NOISE && max == MAX_NOISE) {
-            value += 1.0d;
-        } else if (max == MAX_NOISE) {
-            value = getContext(min, max, value) + 1.0d;
-        } else if (min == MIN_NOISE) {
-            value = Math.abs(getContext(min, max, value) - 1.0d);
-        } else {
-            double median = Math.round((((min + 1.0d) + (max + 1.0d)) / 2.0d) * dimension.getPrecision())
-                    / dimension.getPrecision();
-            value = getContext(min, max, value) + 1.0d;
-            if (value == median) {
-                value = 2.0d;
-            } else {
-                // Coords: A(0;2) & B(medianOffset;0)
-                // Slope = 2 / medianOffset
-                // Final function: f(x) = -slope * x + 2
-                double medianOffset = max - median;
-                double slope = 2.0 / medianOffset;
-                double x = Math.abs(value - median);
-                value = -slope * x + 2.0d;
+    /**
+     * Uses the maximum slope of the noise to check if every rounded noise value within the radius of the chunk center
+     * falls in the same range, first match wins like in {@link LayerSelector}.
+     *
+     * @return The index of that range, or -1 if it can't be guaranteed.
+     */
+    private int getUniformRange(NoiseField noise, double radius, long[] mins, long[] maxs){
+        final int range = getUniformRange(noise, chunkCenterX, chunkCenterZ, radius, mins, maxs);
+        if(range != -1)return range;
+
+        // Cover the square around the search radius with smaller probes, each only has to bound a fraction of it.
+        final double probeHalfWidth = radius / BOUND_PROBES;
+        final double probeRadius = probeHalfWidth * Math.sqrt(2.0d);
+        int uniformRange = -1;
+        for (int i = 0; i < BOUND_PROBES; i++) {
+            for (int j = 0; j < BOUND_PROBES; j++) {
+                final double x = chunkCenterX - radius + (2 * i + 1) * probeHalfWidth;
+                final double z = chunkCenterZ - radius + (2 * j + 1) * probeHalfWidth;
+                final int probeRange = getUniformRange(noise, x, z, probeRadius, mins, maxs);
+                if(probeRange == -1 || (uniformRange != -1 && probeRange != uniformRange))return -1;
+                uniformRange = probeRange;
             }
         }
-        return Math.round((value / 2.0d) * dimension.getPrecision()) / dimension.getPrecision();
+        return uniformRange;
     }
 
-    private double getContext(double min, double max, double value) {
-        double range = max - min;
-        value = value - min;
-        return Math.round((((value / range) * 2) - 1) * dimension.getPrecision()) / dimension.getPrecision();
+    private int getUniformRange(NoiseField noise, double x, double z, double radius, long[] mins, long[] maxs){
+        final double value = noise.getNoise(x, z);
+        // Both the probe and the points may deviate from the exact noise when not using double precision.
+        final double maxDeviation = noise.getMaxDeviation(Math.abs(x) + radius, Math.abs(z) + radius);
+        final double drift = OpenSimplex2S.MAX_SLOPE * radius / noise.getZoom() + 2 * maxDeviation + BOUND_EPSILON;
+
+        // Rounding is monotonic, so every rounded value in range lies between these two.
+        final long low = toTicks(value - drift);
+        final long high = toTicks(value + drift);
+        for (int i = 0; i < mins.length; i++) {
+            if(high >= mins[i] && low <= maxs[i]){
+                return low >= mins[i] && high <= maxs[i] ? i : -1;
+            }
+        }
+        return -1;
     }
 
     //
     //  Layer evaluation methods
     //
 
-    private LayerEval getLayer(@NotNull List<Layer<?>> layers, boolean useContext, double layerNoise, Map<String, Double> contexts) {
-        Layer<?> selectedLayer = null;
-        double min;
-        double max;
-        if (useContext) {
-            Map<double[], Layer<?>> layerMap = getLayerMap(layers, contexts);
-            double[] selectedMinMax = null;
-            for (double[] minMax : layerMap.keySet()) {
-                if (layerNoise >= minMax[0] && layerNoise <= minMax[1]) {
-                    selectedLayer = layerMap.get(minMax);
-                    selectedMinMax = minMax;
-                }
+    private LayerEval getLayer(int region, int type, long layerNoise, Map<String, Long> contexts) {
+        final List<Layer<?>> layers = compiledDimension.getLayers(region, type);
+        if (compiledDimension.isUseContext(region, type)) {
+            MapEval selected = null;
+            for (MapEval eval : getLayerMap(layers, contexts)) {
+                if (layerNoise >= eval.minTicks && layerNoise <= eval.maxTicks) selected = eval;
             }
-            assert selectedLayer != null;
-            min = selectedMinMax[0];
-            max = selectedMinMax[1];
-        } else {
-            selectedLayer = getLayer(layers, layerNoise);
-            min = selectedLayer.getMin();
-            max = selectedLayer.getMax();
+            assert selected != null;
+            return new LayerEval(selected.layer, StrengthTable.direct(selected.min, selected.max,
+                    dimension.getPrecision()));
         }
-        return new LayerEval(selectedLayer, layerNoise, min, max);
+        final int layer = selector.selectLayer(region, type, layerNoise);
+        return new LayerEval(layers.get(layer), compiledDimension.getLayerStrengths(region, type, layer));
     }
 
     @NotNull
-    private Map<double[], Layer<?>> getLayerMap(final List<Layer<?>> layers, final Map<String, Double> contexts) {
+    private List<MapEval> getLayerMap(final List<Layer<?>> layers, final Map<String, Long> contexts) {
+        final double precision = dimension.getPrecision();
         List<Layer<?>> participatingLayers = new ArrayList<>();
         for (Layer<?> layer : layers) {
             boolean add = true;
             for (Context context : layer.getContexts()) {
                 if(contexts.containsKey(context.getContext())) {
-                    double contextDouble = contexts.get(context.getContext());
-                    if (!(context.getMin() <= contextDouble && context.getMax() >= contextDouble)) add = false;
+                    long contextTicks = contexts.get(context.getContext());
+                    if (!(Ticks.ceil(context.getMin(), precision) <= contextTicks &&
+                            Ticks.floor(context.getMax(), precision) >= contextTicks)) add = false;
                 }
             }
             if (add) participatingLayers.add(layer);
@@ -395,7 +471,6 @@ public class ChunkBiomePointSampler {
             currentMin = max + 1.0 / dimension.getPrecision();
         }
         // Fix possible errors
-        Map<double[], Layer<?>> layerMap = new HashMap<>();
         currentMin = -1;
         for (int i = 0; i < layerList.size(); i++) {
             MapEval eval = layerList.get(i);
@@ -404,15 +479,18 @@ public class ChunkBiomePointSampler {
             } else if (i == layerList.size() - 1){
                 eval.max = 1.0d;
             }
-            layerMap.put(new double[]{eval.min, eval.max}, eval.layer);
+            eval.minTicks = Ticks.ceil(eval.min, precision);
+            eval.maxTicks = Ticks.floor(eval.max, precision);
             currentMin = eval.max + 1.0d / dimension.getPrecision();
         }
-        return layerMap;
+        return layerList;
     }
 
     private static class MapEval {
         double min;
         double max;
+        long minTicks;
+        long maxTicks;
         Layer<?> layer;
 
         public MapEval(double min, double max, Layer<?> layer) {
@@ -422,22 +500,29 @@ public class ChunkBiomePointSampler {
         }
     }
 
-    private Layer<?> getLayer(final List<Layer<?>> layers, final double noise) {
-        Layer<?> layerResult = null;
-        for (Layer<?> layer : layers) {
-            if (noise >= layer.getMin() && noise <= layer.getMax()) {
-                layerResult = layer;
-                break;
-            }
-        }
-        return layerResult;
-    }
-
     //
     // Biome evaluation callback
     //
 
+    // The biome of every cell point gathered for this chunk, in the order they were gathered.
+    public int[] getCellBiomes(){
+        int[] biomes = new int[chunkPoints.size()];
+        for (int i = 0; i < biomes.length; i++) {
+            biomes[i] = chunkPoints.get(i).getTag().biome;
+        }
+        return biomes;
+    }
+
+    // The cell points gathered for this chunk, in the same order as getCellBiomes.
+    List<? extends GatheredPoint<?>> getCellPoints(){
+        return chunkPoints;
+    }
+
     public int getBiomeAt(double x, double z){
+        return getClosestPoint(x, z).getTag().biome;
+    }
+
+    GatheredPoint<BiomeEval> getClosestPoint(double x, double z){
         GatheredPoint<BiomeEval> closestPoint = null;
         double closestDistanceSq = Double.MAX_VALUE;
 
@@ -452,7 +537,7 @@ public class ChunkBiomePointSampler {
             }
         }
         assert closestPoint != null;
-        return closestPoint.getTag().biome;
+        return closestPoint;
     }
 
     //
@@ -469,7 +554,7 @@ public class ChunkBiomePointSampler {
         double distanceSq; // The distance from this point to chunkCenter squared
         int type;
         List<LayerEval> layers = new ArrayList<>();
-        Map<String, Double> contexts = new HashMap<>();
+        Map<String, Long> contexts = new HashMap<>(); // Strengths in ticks
 
         // BiomePoint link
         boolean isChunkPoint = false;
@@ -478,15 +563,11 @@ public class ChunkBiomePointSampler {
 
     private static class LayerEval {
         final Layer<?> layer;
-        final double noise;
-        final double min;
-        final double max;
+        final StrengthTable strengths; // Of the range the layer was selected in
 
-        public LayerEval(Layer<?> layer, double noise, double min, double max) {
+        public LayerEval(Layer<?> layer, StrengthTable strengths) {
             this.layer = layer;
-            this.noise = noise;
-            this.min = min;
-            this.max = max;
+            this.strengths = strengths;
         }
     }
 
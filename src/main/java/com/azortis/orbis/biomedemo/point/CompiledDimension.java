@@ -0,0 +1,533 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.ContextSettings;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+import com.azortis.orbis.biomedemo.objects.layer.Context;
+import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.objects.layer.LayerKind;
+import com.azortis.orbis.biomedemo.objects.layer.RegionLayer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The layer hierarchy of a dimension flattened once after loading: every region reachable from it gets an index,
+ * with the layers of each of its types in the order the samplers evaluate them, and a {@link LayerSelector} for all
+ * decisions that only depend on a noise value.
+ *
+ * {@link #compile(Dimension)} generates a class per dimension with every threshold inlined as a constant, so the
+ * JIT can treat the hierarchy as straight-line code, {@link #interpret(Dimension)} walks the ranges instead. Either
+ * way the decisions are then tabled per rounded noise value when the precision allows it, see
+ * {@link QuantizedLayerSelector}.
+ */
+public final class CompiledDimension {
+
+    private static final int TYPES = 3;
+    private static final String TYPE_CONTEXT = "type";
+    private static final double MIN_NOISE = -1.0d;
+    private static final double MAX_NOISE = 1.0d;
+
+    // Covers the rounding of the search radius, so the chunk points themselves are always evaluated.
+    private static final int MIN_RADIUS = 1;
+
+    private final Dimension dimension;
+    private final List<Region> regions = new ArrayList<>();
+    private final Map<Region, Integer> regionIndices = new IdentityHashMap<>();
+    private final List<List<Layer<?>>> layers = new ArrayList<>();
+    private final boolean[] useContext;
+    private final List<Set<String>> consumedContexts = new ArrayList<>();
+    private final boolean typeConsumed;
+
+    private final double[] typeMins;
+    private final double[] typeMaxs;
+    private final double[] regionMins;
+    private final double[] regionMaxs;
+    private final double[][] layerMins;
+    private final double[][] layerMaxs;
+
+    // The same bounds in ticks, and the strength of every value in each of the ranges
+    private final long[] typeMinTicks;
+    private final long[] typeMaxTicks;
+    private final long[] regionMinTicks;
+    private final long[] regionMaxTicks;
+    private final StrengthTable[] typeStrengths;
+    private final StrengthTable[] regionStrengths;
+    private final StrengthTable[][] layerStrengths;
+
+    private final LayerSelector exactSelector;
+    private final LayerSelector selector;
+
+    // The radii around the search radius in which points have to be evaluated, see deriveRadii()
+    private final int[] regionRadii;
+    private final int initialRegionRadius;
+    private final int typeRadius;
+    private final int cellRadius;
+
+    // Hashed on first use, only stores of generated biomes need it
+    private volatile Long fingerprint;
+
+    private CompiledDimension(Dimension dimension, boolean generate, boolean deriveRadii) {
+        this.dimension = dimension;
+
+        Deque<Region> queue = new ArrayDeque<>();
+        for (RegionLayer layer : dimension.getRegions()) queue.add(layer.getLayerObject());
+        while (!queue.isEmpty()) {
+            Region region = queue.poll();
+            if (regionIndices.containsKey(region)) continue;
+            regionIndices.put(region, regions.size());
+            regions.add(region);
+            for (List<RegionLayer> regionLayers : Arrays.asList(region.getLandRegions(), region.getShoreRegions(),
+                    region.getSeaRegions())) {
+                for (RegionLayer layer : regionLayers) queue.add(layer.getLayerObject());
+            }
+        }
+
+        useContext = new boolean[regions.size() * TYPES];
+        layerMins = new double[regions.size() * TYPES][];
+        layerMaxs = new double[regions.size() * TYPES][];
+        for (Region region : regions) {
+            ContextSettings contextSettings = region.getContextSettings();
+            addLayers(region.getLandRegions(), region.getLandBiomes(), contextSettings.isUseLandContext());
+            addLayers(region.getShoreRegions(), region.getShoreBiomes(), contextSettings.isUseShoreContext());
+            addLayers(region.getSeaRegions(), region.getSeaBiomes(), contextSettings.isUseSeaContext());
+        }
+
+        // Indexed by type, 0 = LAND, 1 = SHORE & 2 = SEA
+        typeMins = new double[]{dimension.getLandMin(), dimension.getShoreMin(), dimension.getSeaMin()};
+        typeMaxs = new double[]{dimension.getLandMax(), dimension.getShoreMax(), dimension.getSeaMax()};
+        regionMins = getMins(dimension.getRegions());
+        regionMaxs = getMaxs(dimension.getRegions());
+
+        final double precision = dimension.getPrecision();
+        typeMinTicks = Ticks.ceil(typeMins, precision);
+        typeMaxTicks = Ticks.floor(typeMaxs, precision);
+        regionMinTicks = Ticks.ceil(regionMins, precision);
+        regionMaxTicks = Ticks.floor(regionMaxs, precision);
+        long[][] layerMinTicks = new long[layerMins.length][];
+        long[][] layerMaxTicks = new long[layerMaxs.length][];
+        for (int pair = 0; pair < layerMins.length; pair++) {
+            if (layerMins[pair] == null) continue;
+            layerMinTicks[pair] = Ticks.ceil(layerMins[pair], precision);
+            layerMaxTicks[pair] = Ticks.floor(layerMaxs[pair], precision);
+        }
+
+        // Without a type, the strength is taken over the whole noise range
+        typeStrengths = getStrengths(new double[]{typeMins[0], typeMins[1], typeMins[2], MIN_NOISE},
+                new double[]{typeMaxs[0], typeMaxs[1], typeMaxs[2], MAX_NOISE});
+        regionStrengths = getStrengths(regionMins, regionMaxs);
+        layerStrengths = new StrengthTable[layerMins.length][];
+        for (int pair = 0; pair < layerMins.length; pair++) {
+            if (layerMins[pair] != null) layerStrengths[pair] = getStrengths(layerMins[pair], layerMaxs[pair]);
+        }
+
+        exactSelector = generate ? LayerSelectorCompiler.compile(typeMinTicks, typeMaxTicks, regionMinTicks,
+                regionMaxTicks, layerMinTicks, layerMaxTicks) : new InterpretedLayerSelector(typeMinTicks, typeMaxTicks,
+                regionMinTicks, regionMaxTicks, layerMinTicks, layerMaxTicks);
+        int maxLayers = regionMins.length;
+        for (List<Layer<?>> typeLayers : layers) maxLayers = Math.max(maxLayers, typeLayers.size());
+        selector = QuantizedLayerSelector.create(exactSelector, (long) dimension.getPrecision(), regions.size(),
+                useContext, maxLayers);
+
+        // Contexts are only read where a type distributes by context, collect the names read below every region,
+        // repeated until no set grows so shared and nested regions propagate.
+        for (int i = 0; i < regions.size(); i++) {
+            Set<String> names = new HashSet<>();
+            for (int type = 0; type < TYPES; type++) {
+                if (!useContext[i * TYPES + type]) continue;
+                for (Layer<?> layer : getLayers(i, type)) {
+                    if (layer.getContexts() == null) continue;
+                    for (Context context : layer.getContexts()) names.add(context.getContext());
+                }
+            }
+            consumedContexts.add(names);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < regions.size(); i++) {
+                for (int type = 0; type < TYPES; type++) {
+                    for (Layer<?> layer : getLayers(i, type)) {
+                        if (layer.getKind() != LayerKind.REGION) continue;
+                        Set<String> child = consumedContexts.get(getRegionIndex((Region) layer.getLayerObject()));
+                        if (consumedContexts.get(i).addAll(child)) changed = true;
+                    }
+                }
+            }
+        }
+        boolean type = false;
+        for (RegionLayer layer : dimension.getRegions()) {
+            type |= consumedContexts.get(getRegionIndex(layer.getLayerObject())).contains(TYPE_CONTEXT);
+        }
+        typeConsumed = type;
+
+        regionRadii = new int[regions.size()];
+        if (deriveRadii) {
+            deriveRadii();
+            int initialRadius = isInitialRegionConsumed() ? dimension.getRegionContributionRadius() : MIN_RADIUS;
+            for (RegionLayer layer : dimension.getRegions()) {
+                initialRadius = Math.max(initialRadius, regionRadii[getRegionIndex(layer.getLayerObject())]);
+            }
+            int radius = typeConsumed ? dimension.getTypeContributionRadius() : MIN_RADIUS;
+            for (int regionRadius : regionRadii) radius = Math.max(radius, regionRadius);
+            initialRegionRadius = initialRadius;
+            typeRadius = radius;
+            cellRadius = Math.max(typeRadius, initialRegionRadius);
+        } else {
+            for (int i = 0; i < regions.size(); i++) regionRadii[i] = regions.get(i).getContributionRadius();
+            initialRegionRadius = dimension.getRegionContributionRadius();
+            typeRadius = dimension.getTypeContributionRadius();
+            cellRadius = dimension.getCellPointContributionRadius();
+        }
+    }
+
+    // Hashes what the biomes are generated from, regions by index and biomes by id so renaming them changes nothing.
+    private long computeFingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(),
+                    digest));
+            out.writeLong(dimension.getSeed());
+            out.writeDouble(dimension.getPrecision());
+            out.writeLong(dimension.getRegionSeed());
+            out.writeInt(dimension.getRegionZoom());
+            out.writeLong(dimension.getTypeSeed());
+            out.writeInt(dimension.getTypeZoom());
+            for (int type = 0; type < TYPES; type++) {
+                out.writeDouble(typeMins[type]);
+                out.writeDouble(typeMaxs[type]);
+            }
+            out.writeDouble(dimension.getCellZoom());
+            writeLayers(out, dimension.getRegions());
+            for (int i = 0; i < regions.size(); i++) {
+                out.writeLong(regions.get(i).getSeed());
+                out.writeInt(regions.get(i).getZoom());
+                for (int type = 0; type < TYPES; type++) {
+                    out.writeBoolean(isUseContext(i, type));
+                    writeLayers(out, getLayers(i, type));
+                }
+            }
+            out.flush();
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeLayers(DataOutputStream out, List<? extends Layer<?>> layers) throws IOException {
+        out.writeInt(layers.size());
+        for (Layer<?> layer : layers) {
+            out.writeInt(layer.getKind().ordinal());
+            out.writeInt(layer.getKind() == LayerKind.REGION ? getRegionIndex((Region) layer.getLayerObject()) :
+                    ((Biome) layer.getLayerObject()).getId());
+            out.writeDouble(layer.getMin());
+            out.writeDouble(layer.getMax());
+            out.writeInt(layer.getIndex());
+            out.writeInt(layer.getChance());
+            List<Context> contexts = layer.getContexts();
+            out.writeInt(contexts == null ? -1 : contexts.size());
+            if (contexts == null) continue;
+            for (Context context : contexts) {
+                out.writeUTF(context.getContext());
+                out.writeDouble(context.getMin());
+                out.writeDouble(context.getMax());
+            }
+        }
+    }
+
+    /**
+     * A region only needs its contribution radius if it searches for the border of a strength something reads,
+     * otherwise the chunk points are the only ones whose layer matters. A point can only be evaluated in a region if
+     * it was evaluated in the parent first, so the radius of every region also covers those of the regions below it.
+     */
+    private void deriveRadii() {
+        for (int i = 0; i < regions.size(); i++) {
+            boolean consumed = false;
+            for (int type = 0; type < TYPES; type++) {
+                for (Layer<?> layer : getLayers(i, type)) consumed |= isContextConsumed(layer);
+            }
+            regionRadii[i] = consumed ? regions.get(i).getContributionRadius() : MIN_RADIUS;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < regions.size(); i++) {
+                for (int type = 0; type < TYPES; type++) {
+                    for (Layer<?> layer : getLayers(i, type)) {
+                        if (layer.getKind() != LayerKind.REGION) continue;
+                        int child = regionRadii[getRegionIndex((Region) layer.getLayerObject())];
+                        if (child > regionRadii[i]) {
+                            regionRadii[i] = child;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isInitialRegionConsumed() {
+        for (RegionLayer layer : dimension.getRegions()) {
+            if (isContextConsumed(layer)) return true;
+        }
+        return false;
+    }
+
+    private void addLayers(List<? extends Layer<?>> regionLayers, List<? extends Layer<?>> biomeLayers, boolean context) {
+        final int pair = layers.size();
+        List<Layer<?>> typeLayers = new ArrayList<>(regionLayers);
+        typeLayers.addAll(biomeLayers);
+        layers.add(Collections.unmodifiableList(typeLayers));
+        useContext[pair] = context;
+        if (!context) {
+            layerMins[pair] = getMins(typeLayers);
+            layerMaxs[pair] = getMaxs(typeLayers);
+        }
+    }
+
+    private static double[] getMins(List<? extends Layer<?>> layers) {
+        double[] mins = new double[layers.size()];
+        for (int i = 0; i < mins.length; i++) mins[i] = layers.get(i).getMin();
+        return mins;
+    }
+
+    private static double[] getMaxs(List<? extends Layer<?>> layers) {
+        double[] maxs = new double[layers.size()];
+        for (int i = 0; i < maxs.length; i++) maxs[i] = layers.get(i).getMax();
+        return maxs;
+    }
+
+    private StrengthTable[] getStrengths(double[] mins, double[] maxs) {
+        StrengthTable[] strengths = new StrengthTable[mins.length];
+        for (int i = 0; i < strengths.length; i++) {
+            strengths[i] = StrengthTable.of(mins[i], maxs[i], dimension.getPrecision());
+        }
+        return strengths;
+    }
+
+    /**
+     * Generates a specialized selector for the dimension, which has to be linked.
+     *
+     * @throws IllegalStateException if the hierarchy is too large for a single generated class.
+     */
+    public static CompiledDimension compile(Dimension dimension) {
+        return new CompiledDimension(dimension, true, true);
+    }
+
+    public static CompiledDimension interpret(Dimension dimension) {
+        return new CompiledDimension(dimension, false, true);
+    }
+
+    /**
+     * Evaluates points in the contribution radii as configured, instead of the derived ones. Samples the same biomes,
+     * only slower, it's the reference {@link RadiusValidator} checks the derived radii against.
+     */
+    public static CompiledDimension interpretConfigured(Dimension dimension) {
+        return new CompiledDimension(dimension, false, false);
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return The selector for noise rounded to the precision of the dimension.
+     */
+    public LayerSelector getSelector() {
+        return selector;
+    }
+
+    public int getRegionIndex(Region region) {
+        Integer index = regionIndices.get(region);
+        if (index == null) throw new IllegalArgumentException("Region " + region.getName() + " is not part of " +
+                dimension.getName());
+        return index;
+    }
+
+    /**
+     * @return A hash of the config the biomes are generated from, so biomes stored for the dimension can be matched
+     * against the config they were generated with.
+     */
+    public long getFingerprint() {
+        Long fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+            fingerprint = computeFingerprint();
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    public List<Layer<?>> getLayers(int region, int type) {
+        return layers.get(region * TYPES + type);
+    }
+
+    public boolean isUseContext(int region, int type) {
+        return useContext[region * TYPES + type];
+    }
+
+    long[] getTypeMinTicks() {
+        return typeMinTicks;
+    }
+
+    long[] getTypeMaxTicks() {
+        return typeMaxTicks;
+    }
+
+    long[] getRegionMinTicks() {
+        return regionMinTicks;
+    }
+
+    long[] getRegionMaxTicks() {
+        return regionMaxTicks;
+    }
+
+    /**
+     * @param type The type, or -1 for the whole noise range.
+     */
+    StrengthTable getTypeStrengths(int type) {
+        return typeStrengths[type != -1 ? type : TYPES];
+    }
+
+    StrengthTable getRegionStrengths(int region) {
+        return regionStrengths[region];
+    }
+
+    /**
+     * Only defined for types of the region that don't use contexts.
+     */
+    StrengthTable getLayerStrengths(int region, int type, int layer) {
+        return layerStrengths[region * TYPES + type][layer];
+    }
+
+    /**
+     * A strength is only read while evaluating the rest of the same point, so a layer's strength matters only if a
+     * layer somewhere below it names it as a context.
+     *
+     * @return If the strength of the layer is ever read as a context, never for biomes.
+     */
+    public boolean isContextConsumed(Layer<?> layer) {
+        return layer.getKind() == LayerKind.REGION && consumedContexts.get(getRegionIndex((Region) layer.getLayerObject()))
+                .contains(layer.getLayerName());
+    }
+
+    /**
+     * @return If any region of the dimension names the type as a context.
+     */
+    public boolean isTypeConsumed() {
+        return typeConsumed;
+    }
+
+    /**
+     * @return The radius around the search radius in which the noise of the region has to be evaluated.
+     */
+    public int getRegionRadius(int region) {
+        return regionRadii[region];
+    }
+
+    public int getInitialRegionRadius() {
+        return initialRegionRadius;
+    }
+
+    public int getTypeRadius() {
+        return typeRadius;
+    }
+
+    /**
+     * @return The radius around the search radius in which cell points have to be gathered, the largest of all.
+     */
+    public int getCellRadius() {
+        return cellRadius;
+    }
+
+    /**
+     * The closest cell point to a position lies within a fixed distance of it, depending only on the cell zoom. So
+     * to find it for every position up to a distance from the chunk, the search radius has to reach that much further.
+     *
+     * @param queryRadius How far from the chunk the biome is asked for, see
+     *                    {@link com.azortis.orbis.biomedemo.ScatteredBiomeBlender#getBlendKernelRadius()}.
+     * @return The smallest search radius that finds the closest cell point of every such position.
+     */
+    public int getSearchRadius(double queryRadius) {
+        return (int) Math.ceil(queryRadius + UnfilteredPointGatherer.MAX_GRIDSCALE_DISTANCE_TO_CLOSEST_POINT *
+                dimension.getCellZoom());
+    }
+
+    /**
+     * Checks the selectors against the configured ranges for every value the rounded noise can take, comparing the
+     * double each amount of ticks stands for like the samplers did before noise was kept in ticks.
+     *
+     * @return The amount of decisions that differ, 0 if the selectors are correct.
+     */
+    public long verify() {
+        final long precision = (long) dimension.getPrecision();
+        long mismatches = 0;
+        for (long i = -precision - 1; i <= precision + 1; i++) {
+            mismatches += countMismatches(selector, i);
+            mismatches += countMismatches(exactSelector, i);
+        }
+        return mismatches;
+    }
+
+    private long countMismatches(LayerSelector selector, long noise) {
+        final double value = Ticks.toValue(noise, dimension.getPrecision());
+        long mismatches = 0;
+        if (selector.selectType(noise) != select(typeMins, typeMaxs, value)) mismatches++;
+        if (selector.selectInitialRegion(noise) != select(regionMins, regionMaxs, value)) mismatches++;
+        for (int region = 0; region < regions.size(); region++) {
+            for (int type = 0; type < TYPES; type++) {
+                final int pair = region * TYPES + type;
+                if (useContext[pair]) continue;
+                if (selector.selectLayer(region, type, noise) != select(layerMins[pair], layerMaxs[pair], value)) {
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static int select(double[] mins, double[] maxs, double value) {
+        for (int i = 0; i < mins.length; i++) {
+            if (value >= mins[i] && value <= maxs[i]) return i;
+        }
+        return -1;
+    }
+
+}
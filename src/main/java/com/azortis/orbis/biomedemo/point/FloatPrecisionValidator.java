@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.objects.Dimension;
+
+/**
+ * Samples an area both in double and in single precision, and counts how many cell biome assignments change.
+ */
+public class FloatPrecisionValidator {
+
+    private FloatPrecisionValidator(){}
+
+    /**
+     * @param compiledDimension Shared by both samplers, only the noise differs between them.
+     */
+    public static Result validate(CompiledDimension compiledDimension, double cellFrequency, int chunkWidth,
+                                  int searchRadius, int minX, int minZ, int width, int height){
+        final Dimension dimension = compiledDimension.getDimension();
+        long cells = 0;
+        long changedCells = 0;
+        long changedChunks = 0;
+        NoiseFieldCache doubleCache = new NoiseFieldCache(dimension.getSeed(), cellFrequency, dimension.getPrecision(),
+                false);
+        NoiseFieldCache floatCache = new NoiseFieldCache(dimension.getSeed(), cellFrequency, dimension.getPrecision(),
+                true);
+        for (int chunkZ = minZ; chunkZ < minZ + height; chunkZ += chunkWidth) {
+            for (int chunkX = minX; chunkX < minX + width; chunkX += chunkWidth) {
+                int[] doubleBiomes = new ChunkBiomePointSampler(compiledDimension, doubleCache, chunkWidth,
+                        searchRadius, chunkX, chunkZ).getCellBiomes();
+                int[] floatBiomes = new ChunkBiomePointSampler(compiledDimension, floatCache, chunkWidth,
+                        searchRadius, chunkX, chunkZ).getCellBiomes();
+
+                // Both gather the exact same points, as the point gatherer doesn't depend on the noise.
+                int changed = 0;
+                for (int i = 0; i < doubleBiomes.length; i++) {
+                    if(doubleBiomes[i] != floatBiomes[i])changed++;
+                }
+                cells += doubleBiomes.length;
+                changedCells += changed;
+                if(changed > 0)changedChunks++;
+            }
+        }
+        return new Result(cells, changedCells, changedChunks);
+    }
+
+    public static class Result {
+        private final long cells;
+        private final long changedCells;
+        private final long changedChunks;
+
+        public Result(long cells, long changedCells, long changedChunks) {
+            this.cells = cells;
+            this.changedCells = changedCells;
+            this.changedChunks = changedChunks;
+        }
+
+        public long getCells() {
+            return cells;
+        }
+
+        public long getChangedCells() {
+            return changedCells;
+        }
+
+        public long getChangedChunks() {
+            return changedChunks;
+        }
+
+        @Override
+        public String toString() {
+            return changedCells + " of " + cells + " cell biome assignments changed (" +
+                    String.format("%.4f", changedCells * 100.0d / Math.max(1, cells)) + "%), in " + changedChunks + " chunks";
+        }
+    }
+
+}
@@ -27,12 +27,20 @@ package com.azortis.orbis.biomedemo.point;
 public class GatheredPoint<TTag> {
     private final double x, z;
     private final int hash;
+    // The lattice vertex this point was jittered from, identifies the point regardless of the chunk gathering it.
+    private final int latticeX, latticeZ;
     private TTag tag;
 
     public GatheredPoint(double x, double z, int hash) {
+        this(x, z, hash, 0, 0);
+    }
+
+    public GatheredPoint(double x, double z, int hash, int latticeX, int latticeZ) {
         this.x = x;
         this.z = z;
         this.hash = hash;
+        this.latticeX = latticeX;
+        this.latticeZ = latticeZ;
     }
 
     public double getX() {
@@ -47,6 +55,14 @@ public class GatheredPoint<TTag> {
         return hash;
     }
 
+    public int getLatticeX() {
+        return latticeX;
+    }
+
+    public int getLatticeZ() {
+        return latticeZ;
+    }
+
     public TTag getTag() {
         return tag;
     }
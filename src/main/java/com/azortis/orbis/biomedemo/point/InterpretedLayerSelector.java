@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+/**
+ * Walks the ranges in order, the reference the generated selectors are checked against.
+ */
+final class InterpretedLayerSelector implements LayerSelector {
+
+    private final long[] typeMins;
+    private final long[] typeMaxs;
+    private final long[] regionMins;
+    private final long[] regionMaxs;
+    private final long[][] layerMins;
+    private final long[][] layerMaxs;
+
+    InterpretedLayerSelector(long[] typeMins, long[] typeMaxs, long[] regionMins, long[] regionMaxs,
+                             long[][] layerMins, long[][] layerMaxs) {
+        this.typeMins = typeMins;
+        this.typeMaxs = typeMaxs;
+        this.regionMins = regionMins;
+        this.regionMaxs = regionMaxs;
+        this.layerMins = layerMins;
+        this.layerMaxs = layerMaxs;
+    }
+
+    @Override
+    public int selectType(long noise) {
+        return select(typeMins, typeMaxs, noise);
+    }
+
+    @Override
+    public int selectInitialRegion(long noise) {
+        return select(regionMins, regionMaxs, noise);
+    }
+
+    @Override
+    public int selectLayer(int region, int type, long noise) {
+        final int pair = region * 3 + type;
+        if (layerMins[pair] == null) return -1;
+        return select(layerMins[pair], layerMaxs[pair], noise);
+    }
+
+    private static int select(long[] mins, long[] maxs, long noise) {
+        for (int i = 0; i < mins.length; i++) {
+            if (noise >= mins[i] && noise <= maxs[i]) return i;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+/**
+ * The fixed threshold decisions of one {@link CompiledDimension}, first match wins. The noise is rounded to the
+ * precision of the dimension, in {@link Ticks}. Every method returns -1 if no range contains the noise.
+ */
+public interface LayerSelector {
+
+    /**
+     * @return 0 = LAND, 1 = SHORE & 2 = SEA
+     */
+    int selectType(long noise);
+
+    /**
+     * @return The index in the regions of the dimension.
+     */
+    int selectInitialRegion(long noise);
+
+    /**
+     * Only defined for types of the region that don't use contexts.
+     *
+     * @param region The index of the region in the {@link CompiledDimension}.
+     * @return The index in {@link CompiledDimension#getLayers(int, int)}.
+     */
+    int selectLayer(int region, int type, long noise);
+
+}
@@ -0,0 +1,359 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a {@link LayerSelector} class with every range as a pair of constant comparisons, in the same order
+ * as {@link InterpretedLayerSelector} walks them. The class file is written by hand, it only needs a handful of
+ * instructions. It targets class file version 49, so the branches need no stack map frames.
+ *
+ * The class is defined as a hidden class when the runtime supports those, so it is unloaded together with its
+ * selector. Older runtimes define it as a regular class in this package.
+ */
+final class LayerSelectorCompiler {
+
+    private static final int CLASS_VERSION = 49;
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private static final String SELECTOR_NAME = LayerSelector.class.getName().replace('.', '/');
+    private static final String CLASS_PREFIX = LayerSelectorCompiler.class.getPackage().getName().replace('.', '/') +
+            "/GeneratedLayerSelector";
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    // Opcodes
+    private static final int ICONST_M1 = 0x02;
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_3 = 0x06;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int IMUL = 0x68;
+    private static final int IADD = 0x60;
+    private static final int LCMP = 0x94;
+    private static final int IFLT = 0x9B;
+    private static final int IFGT = 0x9D;
+    private static final int TABLESWITCH = 0xAA;
+    private static final int IRETURN = 0xAC;
+    private static final int RETURN = 0xB1;
+    private static final int INVOKESPECIAL = 0xB7;
+
+    private LayerSelectorCompiler() {
+    }
+
+    static LayerSelector compile(long[] typeMins, long[] typeMaxs, long[] regionMins, long[] regionMaxs,
+                                 long[][] layerMins, long[][] layerMaxs) {
+        final String className = CLASS_PREFIX + classCount.incrementAndGet();
+        final ConstantPool pool = new ConstantPool();
+        final int thisClass = pool.addClass(className);
+        final int superClass = pool.addClass("java/lang/Object");
+        final int selectorClass = pool.addClass(SELECTOR_NAME);
+        final int objectInit = pool.addMethod(superClass, "<init>", "()V");
+
+        List<byte[]> methods = new ArrayList<>();
+        try {
+            Code init = new Code();
+            init.op(ALOAD_0);
+            init.op(INVOKESPECIAL);
+            init.u2(objectInit);
+            init.op(RETURN);
+            methods.add(method(pool, "<init>", "()V", 1, 1, init));
+
+            Code selectType = new Code();
+            writeRanges(selectType, pool, 1, typeMins, typeMaxs);
+            methods.add(method(pool, "selectType", "(J)I", 4, 3, selectType));
+
+            Code selectInitialRegion = new Code();
+            writeRanges(selectInitialRegion, pool, 1, regionMins, regionMaxs);
+            methods.add(method(pool, "selectInitialRegion", "(J)I", 4, 3, selectInitialRegion));
+
+            methods.add(method(pool, "selectLayer", "(IIJ)I", 4, 5, writeLayerSwitch(pool, layerMins, layerMaxs)));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.writeTo(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(selectorClass);
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0); // attributes
+            return define(bytes.toByteArray());
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // selectLayer(region, type, noise) jumps on region * 3 + type to the ranges of that pair
+    private static Code writeLayerSwitch(ConstantPool pool, long[][] layerMins, long[][] layerMaxs) {
+        Code code = new Code();
+        code.op(ILOAD);
+        code.u1(1);
+        code.op(ICONST_3);
+        code.op(IMUL);
+        code.op(ILOAD);
+        code.u1(2);
+        code.op(IADD);
+
+        final int switchPosition = code.length();
+        code.op(TABLESWITCH);
+        while (code.length() % 4 != 0) code.u1(0);
+        final int defaultPosition = code.length();
+        code.u4(0);
+        code.u4(0);
+        code.u4(Math.max(0, layerMins.length - 1));
+        final int offsetsPosition = code.length();
+        for (int i = 0; i < Math.max(1, layerMins.length); i++) code.u4(0);
+
+        // Pairs that use contexts have no ranges and fall through to the default, as does an empty dimension
+        final int notFound = code.length();
+        code.op(ICONST_M1);
+        code.op(IRETURN);
+        code.patch4(defaultPosition, notFound - switchPosition);
+        for (int pair = 0; pair < Math.max(1, layerMins.length); pair++) {
+            if (pair >= layerMins.length || layerMins[pair] == null) {
+                code.patch4(offsetsPosition + pair * 4, notFound - switchPosition);
+                continue;
+            }
+            code.patch4(offsetsPosition + pair * 4, code.length() - switchPosition);
+            writeRanges(code, pool, 3, layerMins[pair], layerMaxs[pair]);
+        }
+        return code;
+    }
+
+    // if (noise >= min && noise <= max) return i; for every range, then return -1
+    private static void writeRanges(Code code, ConstantPool pool, int noiseSlot, long[] mins, long[] maxs) {
+        for (int i = 0; i < mins.length; i++) {
+            code.op(LLOAD);
+            code.u1(noiseSlot);
+            code.op(LDC2_W);
+            code.u2(pool.addLong(mins[i]));
+            code.op(LCMP);
+            final int skipBelow = code.length();
+            code.op(IFLT);
+            code.u2(0);
+
+            code.op(LLOAD);
+            code.u1(noiseSlot);
+            code.op(LDC2_W);
+            code.u2(pool.addLong(maxs[i]));
+            code.op(LCMP);
+            final int skipAbove = code.length();
+            code.op(IFGT);
+            code.u2(0);
+
+            pushInt(code, i);
+            code.op(IRETURN);
+            code.patch2(skipBelow + 1, code.length() - skipBelow);
+            code.patch2(skipAbove + 1, code.length() - skipAbove);
+        }
+        code.op(ICONST_M1);
+        code.op(IRETURN);
+    }
+
+    private static void pushInt(Code code, int value) {
+        if (value <= 5) {
+            code.op(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.op(BIPUSH);
+            code.u1(value);
+        } else if (value <= Short.MAX_VALUE) {
+            code.op(SIPUSH);
+            code.u2(value);
+        } else {
+            throw new IllegalStateException("Too many layers to generate a selector");
+        }
+    }
+
+    private static byte[] method(ConstantPool pool, String name, String descriptor, int maxStack, int maxLocals,
+                                 Code code) throws IOException {
+        if (code.length() > MAX_CODE_LENGTH) throw new IllegalStateException("Too many layers to generate a selector");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(0x0001); // public
+        out.writeShort(pool.addUtf8(name));
+        out.writeShort(pool.addUtf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(pool.addUtf8("Code"));
+        out.writeInt(12 + code.length());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length());
+        out.write(code.toByteArray());
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+        return bytes.toByteArray();
+    }
+
+    private static LayerSelector define(byte[] classBytes) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            MethodHandles.Lookup classLookup;
+            Class<?> optionClass = null;
+            try {
+                optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            } catch (ClassNotFoundException ignored) {
+            }
+            if (optionClass != null) {
+                Method defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class,
+                        boolean.class, Array.newInstance(optionClass, 0).getClass());
+                classLookup = (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, classBytes, true,
+                        Array.newInstance(optionClass, 0));
+            } else {
+                classLookup = MethodHandles.privateLookupIn(lookup.defineClass(classBytes), lookup);
+            }
+            Class<?> selectorClass = classLookup.lookupClass();
+            return (LayerSelector) classLookup.findConstructor(selectorClass, MethodType.methodType(void.class)).invoke();
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Could not define a generated layer selector", ex);
+        }
+    }
+
+    private static final class Code {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        void op(int opcode) {
+            u1(opcode);
+        }
+
+        void u1(int value) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >> 16);
+            u2(value);
+        }
+
+        void patch2(int position, int value) {
+            if (value > Short.MAX_VALUE) throw new IllegalStateException("Too many layers to generate a selector");
+            bytes[position] = (byte) (value >> 8);
+            bytes[position + 1] = (byte) value;
+        }
+
+        void patch4(int position, int value) {
+            bytes[position] = (byte) (value >> 24);
+            bytes[position + 1] = (byte) (value >> 16);
+            bytes[position + 2] = (byte) (value >> 8);
+            bytes[position + 3] = (byte) value;
+        }
+
+        int length() {
+            return length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int addUtf8(String value) {
+            return add("U" + value, 1, 1, out -> out.writeUTF(value));
+        }
+
+        int addClass(String name) {
+            final int nameIndex = addUtf8(name);
+            return add("C" + name, 7, 1, out -> out.writeShort(nameIndex));
+        }
+
+        int addMethod(int owner, String name, String descriptor) {
+            final int nameIndex = addUtf8(name);
+            final int descriptorIndex = addUtf8(descriptor);
+            final int nameAndType = add("N" + name + descriptor, 12, 1, out -> {
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return add("M" + owner + "." + name + descriptor, 10, 1, out -> {
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int addLong(long value) {
+            return add("J" + value, 5, 2, out -> out.writeLong(value));
+        }
+
+        private int add(String key, int tag, int slots, Entry entry) {
+            Integer index = entries.get(key);
+            if (index != null) return index;
+            try {
+                out.writeByte(tag);
+                entry.write(out);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            index = count;
+            count += slots;
+            if (count > 0xFFFF) throw new IllegalStateException("Too many layers to generate a selector");
+            entries.put(key, index);
+            return index;
+        }
+
+        void writeTo(DataOutputStream file) throws IOException {
+            file.writeShort(count);
+            bytes.writeTo(file);
+        }
+
+        private interface Entry {
+            void write(DataOutputStream out) throws IOException;
+        }
+    }
+
+}
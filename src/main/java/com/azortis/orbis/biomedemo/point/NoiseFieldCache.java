@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.noise.NoiseField;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds a {@link NoiseField} per seed and zoom, for one layout of cell points and precision. The fields key their cells by lattice
+ * vertex, which only identifies the same position as long as the point seed and frequency stay the same.
+ * Safe to share between all chunks and threads sampling that layout.
+ */
+public class NoiseFieldCache {
+
+    public static final int DEFAULT_FIELD_CAPACITY = 1 << 14;
+
+    private final long pointSeed;
+    private final double cellFrequency;
+    private final double precision;
+    private final boolean floatPrecision;
+    private final int fieldCapacity;
+    private final Map<FieldKey, NoiseField> fields = new ConcurrentHashMap<>();
+
+    public NoiseFieldCache(long pointSeed, double cellFrequency, double precision, boolean floatPrecision) {
+        this(pointSeed, cellFrequency, precision, floatPrecision, DEFAULT_FIELD_CAPACITY);
+    }
+
+    /**
+     * @param fieldCapacity The amount of cells each field keeps, rounded up to a power of two.
+     */
+    public NoiseFieldCache(long pointSeed, double cellFrequency, double precision, boolean floatPrecision,
+                           int fieldCapacity) {
+        this.pointSeed = pointSeed;
+        this.cellFrequency = cellFrequency;
+        this.precision = precision;
+        this.floatPrecision = floatPrecision;
+        this.fieldCapacity = fieldCapacity;
+    }
+
+    public NoiseField getField(long seed, int zoom) {
+        return fields.computeIfAbsent(new FieldKey(seed, zoom),
+                key -> new NoiseField(seed, zoom, floatPrecision, precision, fieldCapacity));
+    }
+
+    public long getPointSeed() {
+        return pointSeed;
+    }
+
+    public double getCellFrequency() {
+        return cellFrequency;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    public boolean isFloatPrecision() {
+        return floatPrecision;
+    }
+
+    public void clear() {
+        fields.clear();
+    }
+
+    private static class FieldKey {
+        private final long seed;
+        private final int zoom;
+
+        FieldKey(long seed, int zoom) {
+            this.seed = seed;
+            this.zoom = zoom;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FieldKey fieldKey = (FieldKey) o;
+            return seed == fieldKey.seed && zoom == fieldKey.zoom;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(seed, zoom);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.azortis.orbis.biomedemo.point;
+
+/**
+ * Looks every decision up in a table indexed by the ticks of the noise. Rounded noise can only take
+ * 2 * precision + 1 values between -1 and 1, so the tables hold the answer of the delegate for each of them,
+ * anything outside -1 to 1 is passed on to the delegate.
+ */
+final class QuantizedLayerSelector implements LayerSelector {
+
+    // Beyond this many entries the tables stop fitting in cache and the comparisons win again
+    private static final long MAX_ENTRIES = 1 << 22;
+
+    private final LayerSelector delegate;
+    private final int steps;
+
+    private final short[] typeTable;
+    private final short[] regionTable;
+    private final short[][] layerTables;
+
+    private QuantizedLayerSelector(LayerSelector delegate, long precision, int regions, boolean[] useContext) {
+        this.delegate = delegate;
+        this.steps = (int) precision;
+
+        typeTable = new short[2 * steps + 1];
+        regionTable = new short[2 * steps + 1];
+        layerTables = new short[regions * 3][];
+        for (int pair = 0; pair < layerTables.length; pair++) {
+            if (!useContext[pair]) layerTables[pair] = new short[2 * steps + 1];
+        }
+        for (int i = -steps; i <= steps; i++) {
+            typeTable[i + steps] = (short) delegate.selectType(i);
+            regionTable[i + steps] = (short) delegate.selectInitialRegion(i);
+            for (int pair = 0; pair < layerTables.length; pair++) {
+                if (layerTables[pair] != null) {
+                    layerTables[pair][i + steps] = (short) delegate.selectLayer(pair / 3, pair % 3, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The quantized selector, or the delegate itself if the tables would be too large.
+     */
+    static LayerSelector create(LayerSelector delegate, long precision, int regions, boolean[] useContext,
+                                int maxLayers) {
+        final long entries = (2 * precision + 1) * (regions * 3L + 2);
+        if (precision < 1 || entries > MAX_ENTRIES || maxLayers > Short.MAX_VALUE) return delegate;
+        return new QuantizedLayerSelector(delegate, precision, regions, useContext);
+    }
+
+    @Override
+    public int selectType(long noise) {
+        if (noise < -steps || noise > steps) return delegate.selectType(noise);
+        return typeTable[(int) noise + steps];
+    }
+
+    @Override
+    public int selectInitialRegion(long noise) {
+        if (noise < -steps || noise > steps) return delegate.selectInitialRegion(noise);
+        return regionTable[(int) noise + steps];
+    }
+
+    @Override
+    public int selectLayer(int region, int type, long noise) {
+        final short[] table = layerTables[region * 3 + type];
+        if (table == null || noise < -steps || noise > steps) return delegate.selectLayer(region, type, noise);
+        return table[(int) noise + steps];
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.ScatteredBiomeBlender;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+
+/**
+ * Blends an area with the derived radii of a {@link CompiledDimension} and a search radius, and compares the cell
+ * points the blender gets its biomes from to a reference that uses the configured radii and a generous search radius.
+ *
+ * The closest cell point should always be the same. The biomes can still differ where it isn't, but also where a
+ * larger search radius makes more points chunk points, as only those get their strengths refined by distance.
+ */
+public class RadiusValidator {
+
+    private RadiusValidator(){}
+
+    public static Result validate(Dimension dimension, ScatteredBiomeBlender blender, int chunkWidth, int searchRadius,
+                                  int minX, int minZ, int width, int height){
+        CompiledDimension derived = CompiledDimension.interpret(dimension);
+        CompiledDimension configured = CompiledDimension.interpretConfigured(dimension);
+        // One cell further than what is needed in theory.
+        final int referenceSearchRadius = Math.max(searchRadius,
+                derived.getSearchRadius(blender.getBlendKernelRadius())) + (int) Math.ceil(dimension.getCellZoom());
+
+        final double kernelRadiusSq = blender.getBlendKernelRadius() * blender.getBlendKernelRadius();
+
+        // Queries, missed points, changed biomes & changed chunks
+        long[] counts = new long[4];
+        NoiseFieldCache noiseCache = new NoiseFieldCache(dimension.getSeed(), 1.0d / dimension.getCellZoom(),
+                dimension.getPrecision(), false);
+        for (int chunkZ = minZ; chunkZ < minZ + height; chunkZ += chunkWidth) {
+            for (int chunkX = minX; chunkX < minX + width; chunkX += chunkWidth) {
+                ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(derived, noiseCache, chunkWidth,
+                        searchRadius, chunkX, chunkZ);
+                ChunkBiomePointSampler reference = new ChunkBiomePointSampler(configured, noiseCache, chunkWidth,
+                        referenceSearchRadius, chunkX, chunkZ);
+
+                final long changed = counts[1] + counts[2];
+                final double centerX = chunkX + chunkWidth / 2.0d;
+                final double centerZ = chunkZ + chunkWidth / 2.0d;
+                blender.getBlendForChunk(dimension.getSeed(), chunkX, chunkZ, (x, z) -> {
+                    // The blender can ask for points outside its kernel, those get no weight in any column.
+                    double dX = Math.max(0.0d, Math.abs(x - centerX) - chunkWidth / 2.0d);
+                    double dZ = Math.max(0.0d, Math.abs(z - centerZ) - chunkWidth / 2.0d);
+                    if(dX * dX + dZ * dZ >= kernelRadiusSq)return sampler.getBiomeAt(x, z);
+
+                    GatheredPoint<?> point = sampler.getClosestPoint(x, z);
+                    GatheredPoint<?> referencePoint = reference.getClosestPoint(x, z);
+                    counts[0]++;
+                    if(point.getX() != referencePoint.getX() || point.getZ() != referencePoint.getZ())counts[1]++;
+                    int biome = sampler.getBiomeAt(x, z);
+                    if(biome != reference.getBiomeAt(x, z))counts[2]++;
+                    return biome;
+                });
+                if(counts[1] + counts[2] > changed)counts[3]++;
+            }
+        }
+        return new Result(counts[0], counts[1], counts[2], counts[3]);
+    }
+
+    public static class Result {
+        private final long queries;
+        private final long missedPoints;
+        private final long changedBiomes;
+        private final long changedChunks;
+
+        public Result(long queries, long missedPoints, long changedBiomes, long changedChunks) {
+            this.queries = queries;
+            this.missedPoints = missedPoints;
+            this.changedBiomes = changedBiomes;
+            this.changedChunks = changedChunks;
+        }
+
+        public long getQueries() {
+            return queries;
+        }
+
+        /**
+         * @return The amount of queries for which the closest cell point wasn't gathered, 0 if the radius is safe.
+         */
+        public long getMissedPoints() {
+            return missedPoints;
+        }
+
+        public long getChangedBiomes() {
+            return changedBiomes;
+        }
+
+        public long getChangedChunks() {
+            return changedChunks;
+        }
+
+        @Override
+        public String toString() {
+            return missedPoints + " of " + queries + " blended closest points missed, " + changedBiomes +
+                    " biomes changed (" + String.format("%.4f", changedBiomes * 100.0d / Math.max(1, queries)) +
+                    "%), in " + changedChunks + " chunks";
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+/**
+ * The strength of a value within a range, the closer to the middle of the range the stronger, in ticks of the
+ * precision. A range only holds 2 * precision + 1 values at most, so for fixed ranges every strength is computed
+ * once up front.
+ */
+final class StrengthTable {
+
+    private final static double MIN_NOISE = -1.0d;
+    private final static double MAX_NOISE = 1.0d;
+
+    // Ranges this wide are computed on every lookup instead
+    private static final long MAX_ENTRIES = 1 << 16;
+
+    private final double min;
+    private final double max;
+    private final double precision;
+    private final long minTicks;
+    private final long maxTicks;
+    private final long[] strengths;
+
+    private StrengthTable(double min, double max, double precision, boolean table) {
+        this.min = min;
+        this.max = max;
+        this.precision = precision;
+        this.minTicks = Ticks.ceil(min, precision);
+        this.maxTicks = Ticks.floor(max, precision);
+        if (table && minTicks <= maxTicks && maxTicks - minTicks < MAX_ENTRIES) {
+            strengths = new long[(int) (maxTicks - minTicks + 1)];
+            for (int i = 0; i < strengths.length; i++) strengths[i] = compute(minTicks + i);
+        } else {
+            strengths = null;
+        }
+    }
+
+    static StrengthTable of(double min, double max, double precision) {
+        return new StrengthTable(min, max, precision, true);
+    }
+
+    /**
+     * For ranges that are only used once, computes every strength on lookup.
+     */
+    static StrengthTable direct(double min, double max, double precision) {
+        return new StrengthTable(min, max, precision, false);
+    }
+
+    long get(long ticks) {
+        if (ticks < minTicks || ticks > maxTicks) return 0;
+        return strengths != null ? strengths[(int) (ticks - minTicks)] : compute(ticks);
+    }
+
+    private long compute(long ticks) {
+        double value = Ticks.toValue(ticks, precision);
+        if (min == MIN_NOISE && max == MAX_NOISE) {
+            value += 1.0d;
+        } else if (max == MAX_NOISE) {
+            value = getContext(value) + 1.0d;
+        } else if (min == MIN_NOISE) {
+            value = Math.abs(getContext(value) - 1.0d);
+        } else {
+            double median = Math.round((((min + 1.0d) + (max + 1.0d)) / 2.0d) * precision) / precision;
+            value = getContext(value) + 1.0d;
+            if (value == median) {
+                value = 2.0d;
+            } else {
+                // Coords: A(0;2) & B(medianOffset;0)
+                // Slope = 2 / medianOffset
+                // Final function: f(x) = -slope * x + 2
+                double medianOffset = max - median;
+                double slope = 2.0 / medianOffset;
+                double x = Math.abs(value - median);
+                value = -slope * x + 2.0d;
+            }
+        }
+        return Ticks.round(value / 2.0d, precision);
+    }
+
+    private double getContext(double value) {
+        double range = max - min;
+        value = value - min;
+        return Math.round((((value / range) * 2) - 1) * precision) / precision;
+    }
+
+}
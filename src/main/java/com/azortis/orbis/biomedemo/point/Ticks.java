@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+/**
+ * Noise and context values rounded to the precision of a dimension, counted in steps of 1 / precision. A value of
+ * t ticks stands for exactly t / precision, the double the samplers used to round to, so comparing ticks against
+ * the bounds from {@link #ceil(double, double)} and {@link #floor(double, double)} gives the same answer as comparing
+ * those doubles against the configured bounds.
+ */
+public final class Ticks {
+
+    // Noise stays within -1 to 1, so ticks of up to this precision fit an int.
+    public static final double MAX_PRECISION = 1 << 30;
+
+    private Ticks() {
+    }
+
+    public static long round(double value, double precision) {
+        return Math.round(value * precision);
+    }
+
+    public static double toValue(long ticks, double precision) {
+        return ticks / precision;
+    }
+
+    /**
+     * @return The least ticks whose value is at least the bound.
+     */
+    public static long ceil(double bound, double precision) {
+        if (Double.isNaN(bound)) return Long.MAX_VALUE;
+        long ticks = (long) Math.ceil(bound * precision);
+        while (toValue(ticks - 1, precision) >= bound) ticks--;
+        while (toValue(ticks, precision) < bound) ticks++;
+        return ticks;
+    }
+
+    /**
+     * @return The greatest ticks whose value is at most the bound.
+     */
+    public static long floor(double bound, double precision) {
+        if (Double.isNaN(bound)) return Long.MIN_VALUE;
+        long ticks = (long) Math.floor(bound * precision);
+        while (toValue(ticks + 1, precision) <= bound) ticks++;
+        while (toValue(ticks, precision) > bound) ticks--;
+        return ticks;
+    }
+
+    static long[] ceil(double[] bounds, double precision) {
+        long[] ticks = new long[bounds.length];
+        for (int i = 0; i < ticks.length; i++) ticks[i] = ceil(bounds[i], precision);
+        return ticks;
+    }
+
+    static long[] floor(double[] bounds, double precision) {
+        long[] ticks = new long[bounds.length];
+        for (int i = 0; i < ticks.length; i++) ticks[i] = floor(bounds[i], precision);
+        return ticks;
+    }
+
+}
@@ -226,7 +226,8 @@ public class UnfilteredPointGatherer<TTag> {
             // without the added overhead of this less limiting check.
             // A possible alternate implementation of this could employ a callback function,
             // to avoid adding the points to the list in the first place.
-            GatheredPoint<TTag> worldPoint = new GatheredPoint<TTag>(scaledX * inverseFrequency, scaledZ * inverseFrequency, remainingHash);
+            GatheredPoint<TTag> worldPoint = new GatheredPoint<TTag>(scaledX * inverseFrequency, scaledZ * inverseFrequency,
+                    remainingHash, xsb + point.xsv, zsb + point.zsv);
             worldPointsList.add(worldPoint);
         }
 
@@ -234,10 +235,13 @@ public class UnfilteredPointGatherer<TTag> {
     }
 
     private static class LatticePoint {
+        public int xsv, zsv;
         public int xsvp, zsvp;
         public double xv, zv;
 
         public LatticePoint(int xsv, int zsv) {
+            this.xsv = xsv;
+            this.zsv = zsv;
             this.xsvp = xsv * PRIME_X;
             this.zsvp = zsv * PRIME_Z;
             double t = (xsv + zsv) * -0.211324865405187;
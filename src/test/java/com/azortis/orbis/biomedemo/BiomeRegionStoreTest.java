@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomeRegionStoreTest {
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final long SEED = 1234;
+    private static final long FINGERPRINT = 0x5EEDL;
+    // Where the first record of a region file starts, after its header and table
+    private static final int FIRST_RECORD = 32 + BiomeRegionStore.REGION_CHUNKS * BiomeRegionStore.REGION_CHUNKS *
+            Long.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsChunksAcrossReopening() throws IOException {
+        // Spread over four regions, including ones at negative coordinates
+        final int[][] chunks = {{0, 0}, {16, 0}, {-16, -16}, {512, 0}, {-512, 1024}};
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            for (int[] chunk : chunks) store.put(chunk[0], chunk[1], getBiomes(chunk[0], chunk[1]));
+        }
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            for (int[] chunk : chunks) {
+                LinkedBiomeWeightMap expected = getBiomes(chunk[0], chunk[1]);
+                assertTrue(store.contains(chunk[0], chunk[1]));
+                assertSameBiomes(expected, store.get(chunk[0], chunk[1]));
+                int[] dominant = PalettedBiomeContainer.fromBlend(expected, CHUNK_WIDTH).decode();
+                for (int z = 0; z < CHUNK_WIDTH; z++) {
+                    for (int x = 0; x < CHUNK_WIDTH; x++) {
+                        assertEquals(dominant[z * CHUNK_WIDTH + x],
+                                store.getDominantBiome(chunk[0] + x, chunk[1] + z));
+                    }
+                }
+            }
+            assertNull(store.get(32, 0));
+            assertFalse(store.contains(-32, -16));
+            assertEquals(-1, store.getDominantBiome(40, 3));
+            // Never written, so there's no file for it
+            assertNull(store.get(4096, 4096));
+        }
+    }
+
+    @Test
+    void rewrittenChunkReadsTheLastRecord() throws IOException {
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            store.put(0, 0, getBiomes(0, 0));
+            store.put(0, 0, getBiomes(48, 48));
+        }
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            assertSameBiomes(getBiomes(48, 48), store.get(0, 0));
+        }
+    }
+
+    @Test
+    void corruptedRecordReadsAsMissing() throws IOException {
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            store.put(0, 0, getBiomes(0, 0));
+            store.put(16, 0, getBiomes(16, 0));
+        }
+        // Flips a weight of the first record, the second follows it untouched.
+        try (FileChannel channel = FileChannel.open(directory.resolve("r.0.0.bin"), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            final long position = FIRST_RECORD + 100;
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0x10)).rewind();
+            channel.write(value, position);
+        }
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            assertNull(store.get(0, 0));
+            assertFalse(store.contains(0, 0));
+            assertEquals(-1, store.getDominantBiome(3, 3));
+            assertSameBiomes(getBiomes(16, 0), store.get(16, 0));
+        }
+    }
+
+    @Test
+    void refusesFilesOfAnotherConfig() throws IOException {
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            store.put(0, 0, getBiomes(0, 0));
+        }
+        try (BiomeRegionStore store = open(FINGERPRINT + 1)) {
+            assertThrows(IOException.class, () -> store.get(0, 0));
+            assertThrows(IOException.class, () -> store.put(16, 0, getBiomes(16, 0)));
+        }
+        try (BiomeRegionStore store = new BiomeRegionStore(directory, CHUNK_WIDTH, SEED + 1, FINGERPRINT)) {
+            assertThrows(IOException.class, () -> store.contains(0, 0));
+        }
+        // Refusing it left the file alone.
+        try (BiomeRegionStore store = open(FINGERPRINT)) {
+            assertSameBiomes(getBiomes(0, 0), store.get(0, 0));
+        }
+    }
+
+    private BiomeRegionStore open(long fingerprint) throws IOException {
+        return new BiomeRegionStore(directory, CHUNK_WIDTH, SEED, fingerprint);
+    }
+
+    // Three biomes whose weights add up to one, with the dominant one changing over the chunk.
+    private static LinkedBiomeWeightMap getBiomes(int chunkX, int chunkZ) {
+        final int columns = CHUNK_WIDTH * CHUNK_WIDTH;
+        LinkedBiomeWeightMap third = new LinkedBiomeWeightMap(7, columns, null);
+        LinkedBiomeWeightMap second = new LinkedBiomeWeightMap(3 + Math.floorMod(chunkX, 5), columns, third);
+        LinkedBiomeWeightMap first = new LinkedBiomeWeightMap(40 + Math.floorMod(chunkZ, 3), columns, second);
+        for (int column = 0; column < columns; column++) {
+            final double a = (column % CHUNK_WIDTH) / (double) CHUNK_WIDTH;
+            final double b = (column / CHUNK_WIDTH) / (double) CHUNK_WIDTH * (1 - a);
+            first.getWeights()[column] = a;
+            second.getWeights()[column] = b;
+            third.getWeights()[column] = 1 - a - b;
+        }
+        return first;
+    }
+
+    // The stored weights are quantized to 16 bits.
+    private static void assertSameBiomes(LinkedBiomeWeightMap expected, LinkedBiomeWeightMap actual) {
+        while (expected != null) {
+            assertNotNull(actual);
+            assertEquals(expected.getBiome(), actual.getBiome());
+            for (int column = 0; column < expected.getWeights().length; column++) {
+                assertEquals(expected.getWeights()[column], actual.getWeights()[column], 1.0d / 0xFFFF);
+            }
+            expected = expected.getNext();
+            actual = actual.getNext();
+        }
+        assertNull(actual);
+    }
+
+}
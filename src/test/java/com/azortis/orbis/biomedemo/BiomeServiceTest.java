@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.point.CompiledDimension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomeServiceTest {
+
+    private static final int CHUNK_WIDTH = 16;
+    private static final int CALLERS = 8;
+
+    private static AreaGenerator generator;
+
+    @BeforeAll
+    static void setUp() {
+        Dimension dimension = TestConfig.load().getDimensions().get(0);
+        CompiledDimension compiledDimension = CompiledDimension.compile(dimension);
+        ScatteredBiomeBlender blender = new ScatteredBiomeBlender(0.04, 32, CHUNK_WIDTH);
+        generator = new AreaGenerator(compiledDimension, blender, CHUNK_WIDTH,
+                compiledDimension.getSearchRadius(blender.getBlendKernelRadius()));
+    }
+
+    @Test
+    void concurrentRequestsShareGeneration() throws Exception {
+        ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1);
+        try (BiomeService service = new BiomeService(generator, scheduler)) {
+            // Holds the only thread, so every request arrives while the first one is still queued.
+            CountDownLatch release = TestJob.block(scheduler);
+            ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+            List<CompletableFuture<LinkedBiomeWeightMap>> futures = new ArrayList<>();
+            try {
+                List<Future<CompletableFuture<LinkedBiomeWeightMap>>> requests = new ArrayList<>();
+                for (int i = 0; i < CALLERS; i++) requests.add(callers.submit(() -> service.getChunk(32, -48)));
+                for (Future<CompletableFuture<LinkedBiomeWeightMap>> request : requests) futures.add(request.get());
+            } finally {
+                callers.shutdown();
+                release.countDown();
+            }
+
+            LinkedBiomeWeightMap first = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (CompletableFuture<LinkedBiomeWeightMap> future : futures) {
+                assertSame(first, future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(CALLERS - 1, service.getCoalescedRequests());
+            assertSameBiomes(generator.generateChunk(32, -48), first);
+        }
+    }
+
+    @Test
+    void cancellingOneCallerKeepsTheOthers() throws Exception {
+        ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1);
+        try (BiomeService service = new BiomeService(generator, scheduler)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            CompletableFuture<LinkedBiomeWeightMap> cancelled = service.getChunk(0, 16);
+            CompletableFuture<LinkedBiomeWeightMap> kept = service.getChunk(0, 16);
+            assertTrue(cancelled.cancel(false));
+            release.countDown();
+
+            assertSameBiomes(generator.generateChunk(0, 16), kept.get(10, TimeUnit.SECONDS));
+            assertTrue(cancelled.isCancelled());
+            assertEquals(0, service.getSkippedChunks());
+        }
+    }
+
+    @Test
+    void cancellingEveryCallerSkipsTheChunk() throws Exception {
+        ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1);
+        try (BiomeService service = new BiomeService(generator, scheduler)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            CompletableFuture<LinkedBiomeWeightMap> first = service.getChunk(64, 64);
+            CompletableFuture<LinkedBiomeWeightMap> second = service.getChunk(64, 64);
+            first.cancel(false);
+            second.cancel(false);
+            release.countDown();
+
+            // A request after the withdrawal starts over instead of joining the cancelled one.
+            // The withdrawn request is still queued in front of the new one, on the only thread.
+            assertSameBiomes(generator.generateChunk(64, 64), service.getChunk(64, 64).get(10, TimeUnit.SECONDS));
+            assertEquals(1, service.getCoalescedRequests());
+            assertEquals(1, service.getSkippedChunks());
+        }
+    }
+
+    static void assertSameBiomes(LinkedBiomeWeightMap expected, LinkedBiomeWeightMap actual) {
+        while (expected != null) {
+            assertNotNull(actual);
+            assertEquals(expected.getBiome(), actual.getBiome());
+            assertArrayEquals(expected.getWeights(), actual.getWeights());
+            expected = expected.getNext();
+            actual = actual.getNext();
+        }
+        assertNull(actual);
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSchedulerTest {
+
+    private static final int CHUNK_WIDTH = 16;
+
+    @Test
+    void runsClosestToTheObserverFirst() throws Exception {
+        try (ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            scheduler.addObserver(100, -20);
+            List<int[]> chunks = Arrays.asList(new int[]{-160, 0}, new int[]{96, -32}, new int[]{0, 0},
+                    new int[]{320, 320}, new int[]{112, 48}, new int[]{96, -16}, new int[]{-16, -160});
+            List<int[]> order = run(scheduler, release, chunks);
+
+            List<int[]> expected = new ArrayList<>(chunks);
+            expected.sort((a, b) -> Double.compare(getDistanceSq(a, 100, -20), getDistanceSq(b, 100, -20)));
+            assertOrder(expected, order);
+        }
+    }
+
+    @Test
+    void followsTheObserverAsItMoves() throws Exception {
+        try (ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1)) {
+            ChunkScheduler.Observer observer = scheduler.addObserver(0, 0);
+            CountDownLatch release = TestJob.block(scheduler);
+            List<int[]> chunks = Arrays.asList(new int[]{0, 0}, new int[]{-512, 0}, new int[]{512, 0});
+            observer.move(520, 8);
+            List<int[]> order = run(scheduler, release, chunks);
+            assertOrder(Arrays.asList(new int[]{512, 0}, new int[]{0, 0}, new int[]{-512, 0}), order);
+        }
+    }
+
+    // The diagonal neighbour of the closest chunk is further away than the other one, but is taken along with it.
+    @Test
+    void batchesAdjacentChunks() throws Exception {
+        List<int[]> chunks = Arrays.asList(new int[]{0, 0}, new int[]{-32, -16}, new int[]{16, 16});
+        try (ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 1)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            scheduler.addObserver(0, 0);
+            assertOrder(Arrays.asList(new int[]{0, 0}, new int[]{-32, -16}, new int[]{16, 16}),
+                    run(scheduler, release, chunks));
+        }
+        try (ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, Double.POSITIVE_INFINITY, 4)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            scheduler.addObserver(0, 0);
+            assertOrder(Arrays.asList(new int[]{0, 0}, new int[]{16, 16}, new int[]{-32, -16}),
+                    run(scheduler, release, chunks));
+        }
+    }
+
+    @Test
+    void cancelsJobsFarFromTheirObservers() throws Exception {
+        try (ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, 256, 1)) {
+            ChunkScheduler.Observer moved = scheduler.addObserver(0, 0);
+            ChunkScheduler.Observer removed = scheduler.addObserver(0, 0);
+            ChunkScheduler.Observer stays = scheduler.addObserver(64, 0);
+            CountDownLatch release = TestJob.block(scheduler);
+            CountDownLatch done = new CountDownLatch(1);
+            TestJob far = new TestJob(0, 0, done::countDown);
+            TestJob gone = new TestJob(16, 0, done::countDown);
+            TestJob near = new TestJob(32, 0, done::countDown);
+            far.getObservers().add(moved);
+            gone.getObservers().add(removed);
+            near.getObservers().add(moved);
+            near.getObservers().add(removed);
+            near.getObservers().add(stays);
+            scheduler.schedule(far);
+            scheduler.schedule(gone);
+            scheduler.schedule(near);
+            moved.move(4096, 0);
+            removed.remove();
+            release.countDown();
+
+            // Only the last one still has an observer within reach.
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertTrue(far.isCancelled());
+            assertTrue(gone.isCancelled());
+            assertFalse(near.isCancelled());
+        }
+    }
+
+    @Test
+    void completesEveryCancelledRequest() throws Exception {
+        ChunkScheduler scheduler = new ChunkScheduler(1, CHUNK_WIDTH, 256, 1);
+        ChunkScheduler.Observer observer = scheduler.addObserver(0, 0);
+        List<CompletableFuture<LinkedBiomeWeightMap>> futures = new ArrayList<>();
+        // The requests are cancelled before anything generates them.
+        try (BiomeService service = new BiomeService(null, scheduler)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            for (int i = 0; i < 8; i++) {
+                futures.add(service.getChunk(i * CHUNK_WIDTH, 0, observer));
+                futures.add(service.getChunk(i * CHUNK_WIDTH, 0, observer));
+            }
+            observer.move(-4096, 0);
+            release.countDown();
+            for (CompletableFuture<LinkedBiomeWeightMap> future : futures) {
+                assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(8, service.getCancelledChunks());
+        }
+
+        scheduler = new ChunkScheduler(1, CHUNK_WIDTH, 256, 1);
+        observer = scheduler.addObserver(0, 0);
+        futures.clear();
+        try (BiomeService service = new BiomeService(null, scheduler)) {
+            CountDownLatch release = TestJob.block(scheduler);
+            for (int i = 0; i < 8; i++) futures.add(service.getChunk(0, i * CHUNK_WIDTH, observer));
+            observer.remove();
+            release.countDown();
+            for (CompletableFuture<LinkedBiomeWeightMap> future : futures) {
+                assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+        }
+
+        // Closing cancels what is still queued.
+        scheduler = new ChunkScheduler(1, CHUNK_WIDTH, 256, 1);
+        futures.clear();
+        try (BiomeService service = new BiomeService(null, scheduler)) {
+            TestJob.block(scheduler);
+            for (int i = 0; i < 8; i++) futures.add(service.getChunk(i * CHUNK_WIDTH, i * CHUNK_WIDTH));
+        }
+        for (CompletableFuture<LinkedBiomeWeightMap> future : futures) {
+            assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    // Runs the chunks after the scheduler is released, in the order it took them.
+    private static List<int[]> run(ChunkScheduler scheduler, CountDownLatch release, List<int[]> chunks)
+            throws InterruptedException {
+        List<int[]> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(chunks.size());
+        for (int[] chunk : chunks) {
+            scheduler.schedule(new TestJob(chunk[0], chunk[1], () -> {
+                order.add(chunk);
+                done.countDown();
+            }));
+        }
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return order;
+    }
+
+    private static double getDistanceSq(int[] chunk, double x, double z) {
+        final double dX = chunk[0] + CHUNK_WIDTH / 2.0d - x;
+        final double dZ = chunk[1] + CHUNK_WIDTH / 2.0d - z;
+        return dX * dX + dZ * dZ;
+    }
+
+    private static void assertOrder(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "Chunk " + i);
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo;
+
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.ContextSettings;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import com.azortis.orbis.biomedemo.objects.Region;
+import com.azortis.orbis.biomedemo.objects.layer.Context;
+import com.azortis.orbis.biomedemo.objects.layer.Layer;
+import com.azortis.orbis.biomedemo.point.CompiledDimension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DimensionPackTest {
+
+    // Magic, version, length and checksum
+    private static final int HEADER_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsWhatWasWritten() throws IOException {
+        DimensionPack pack = TestConfig.load();
+        File packFile = directory.resolve("pack.bin").toFile();
+        pack.write(packFile);
+        DimensionPack loaded = DimensionPack.load(packFile);
+        loaded.validate();
+
+        assertEquals(pack.getBiomes().size(), loaded.getBiomes().size());
+        for (int i = 0; i < pack.getBiomes().size(); i++) {
+            Biome expected = pack.getBiomes().get(i);
+            Biome actual = loaded.getBiomes().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getRgb() & 0xFFFFFF, actual.getRgb() & 0xFFFFFF, expected.getName());
+        }
+
+        assertEquals(pack.getRegions().size(), loaded.getRegions().size());
+        for (int i = 0; i < pack.getRegions().size(); i++) {
+            Region expected = pack.getRegions().get(i);
+            Region actual = loaded.getRegions().get(i);
+            final String name = expected.getName();
+            assertEquals(name, actual.getName());
+            assertContextSettings(expected.getContextSettings(), actual.getContextSettings(), name);
+            assertEquals(expected.getSeed(), actual.getSeed(), name);
+            assertEquals(expected.getZoom(), actual.getZoom(), name);
+            assertEquals(expected.getContributionRadius(), actual.getContributionRadius(), name);
+            assertLayers(expected.getLandRegions(), actual.getLandRegions(), name + " land regions");
+            assertLayers(expected.getLandBiomes(), actual.getLandBiomes(), name + " land biomes");
+            assertLayers(expected.getShoreRegions(), actual.getShoreRegions(), name + " shore regions");
+            assertLayers(expected.getShoreBiomes(), actual.getShoreBiomes(), name + " shore biomes");
+            assertLayers(expected.getSeaRegions(), actual.getSeaRegions(), name + " sea regions");
+            assertLayers(expected.getSeaBiomes(), actual.getSeaBiomes(), name + " sea biomes");
+        }
+
+        assertEquals(pack.getDimensions().size(), loaded.getDimensions().size());
+        for (int i = 0; i < pack.getDimensions().size(); i++) {
+            Dimension expected = pack.getDimensions().get(i);
+            Dimension actual = loaded.getDimensions().get(i);
+            final String name = expected.getName();
+            assertEquals(name, actual.getName());
+            assertEquals(expected.getSeed(), actual.getSeed(), name);
+            assertEquals(expected.getPrecision(), actual.getPrecision(), name);
+            assertEquals(expected.getRegionSeed(), actual.getRegionSeed(), name);
+            assertEquals(expected.getRegionZoom(), actual.getRegionZoom(), name);
+            assertEquals(expected.getTypeSeed(), actual.getTypeSeed(), name);
+            assertEquals(expected.getTypeZoom(), actual.getTypeZoom(), name);
+            assertEquals(expected.getSeaMin(), actual.getSeaMin(), name);
+            assertEquals(expected.getSeaMax(), actual.getSeaMax(), name);
+            assertEquals(expected.getShoreMin(), actual.getShoreMin(), name);
+            assertEquals(expected.getShoreMax(), actual.getShoreMax(), name);
+            assertEquals(expected.getLandMin(), actual.getLandMin(), name);
+            assertEquals(expected.getLandMax(), actual.getLandMax(), name);
+            assertEquals(expected.getCellZoom(), actual.getCellZoom(), name);
+            assertEquals(expected.getCellPointContributionRadius(), actual.getCellPointContributionRadius(), name);
+            assertEquals(expected.getTypeContributionRadius(), actual.getTypeContributionRadius(), name);
+            assertEquals(expected.getRegionContributionRadius(), actual.getRegionContributionRadius(), name);
+            assertLayers(expected.getRegions(), actual.getRegions(), name + " regions");
+            // Covers the linking as well, which the fields above don't.
+            assertEquals(CompiledDimension.compile(expected).getFingerprint(),
+                    CompiledDimension.compile(actual).getFingerprint(), name);
+        }
+    }
+
+    @Test
+    void refusesTruncatedFiles() throws IOException {
+        File packFile = directory.resolve("pack.bin").toFile();
+        TestConfig.load().write(packFile);
+        final byte[] bytes = Files.readAllBytes(packFile.toPath());
+        for (int length : new int[]{0, 3, HEADER_SIZE - 1, HEADER_SIZE, bytes.length / 2, bytes.length - 1}) {
+            Files.write(packFile.toPath(), Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> DimensionPack.load(packFile), length + " bytes");
+        }
+    }
+
+    @Test
+    void refusesFlippedBits() throws IOException {
+        File packFile = directory.resolve("pack.bin").toFile();
+        TestConfig.load().write(packFile);
+        final byte[] bytes = Files.readAllBytes(packFile.toPath());
+        // Every byte of the header, and spread over the payload
+        for (int position = 0; position < bytes.length; position += position < HEADER_SIZE ? 1 : 37) {
+            for (int bit = 0; bit < Byte.SIZE; bit += 3) {
+                byte[] flipped = bytes.clone();
+                flipped[position] ^= (byte) (1 << bit);
+                Files.write(packFile.toPath(), flipped);
+                assertThrows(IOException.class, () -> DimensionPack.load(packFile),
+                        "Bit " + bit + " of byte " + position);
+            }
+        }
+    }
+
+    private static void assertContextSettings(ContextSettings expected, ContextSettings actual, String name) {
+        if (expected == null) {
+            assertNull(actual, name);
+            return;
+        }
+        assertNotNull(actual, name);
+        assertEquals(expected.isUseLandContext(), actual.isUseLandContext(), name);
+        assertEquals(expected.isUseShoreContext(), actual.isUseShoreContext(), name);
+        assertEquals(expected.isUseSeaContext(), actual.isUseSeaContext(), name);
+    }
+
+    private static void assertLayers(List<? extends Layer<?>> expected, List<? extends Layer<?>> actual,
+                                     String name) {
+        if (expected == null) {
+            assertNull(actual, name);
+            return;
+        }
+        assertNotNull(actual, name);
+        assertEquals(expected.size(), actual.size(), name);
+        for (int i = 0; i < expected.size(); i++) {
+            final Layer<?> expectedLayer = expected.get(i);
+            final Layer<?> actualLayer = actual.get(i);
+            final String layerName = name + " " + expectedLayer.getLayerName();
+            assertEquals(expectedLayer.getLayerName(), actualLayer.getLayerName(), layerName);
+            assertEquals(expectedLayer.getKind(), actualLayer.getKind(), layerName);
+            assertEquals(expectedLayer.getMin(), actualLayer.getMin(), layerName);
+            assertEquals(expectedLayer.getMax(), actualLayer.getMax(), layerName);
+            assertEquals(expectedLayer.getIndex(), actualLayer.getIndex(), layerName);
+            assertEquals(expectedLayer.getChance(), actualLayer.getChance(), layerName);
+            assertContexts(expectedLayer.getContexts(), actualLayer.getContexts(), layerName);
+        }
+    }
+
+    private static void assertContexts(List<Context> expected, List<Context> actual, String name) {
+        if (expected == null) {
+            assertNull(actual, name);
+            return;
+        }
+        assertNotNull(actual, name);
+        assertEquals(expected.size(), actual.size(), name);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getContext(), actual.get(i).getContext(), name);
+            assertEquals(expected.get(i).getMin(), actual.get(i).getMin(), name);
+            assertEquals(expected.get(i).getMax(), actual.get(i).getMax(), name);
+        }
+    }
+
+}
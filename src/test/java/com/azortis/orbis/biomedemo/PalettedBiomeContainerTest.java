@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PalettedBiomeContainerTest {
+
+    private static final int WIDTH = 16;
+
+    @Test
+    void roundTripsEveryPaletteSize() throws IOException {
+        final int[] paletteSizes = {1, 2, 3, 5, 17};
+        final int[] bitsPerEntry = {0, 1, 2, 3, 5};
+        for (int i = 0; i < paletteSizes.length; i++) {
+            int[] biomes = getBiomes(paletteSizes[i]);
+            PalettedBiomeContainer container = PalettedBiomeContainer.of(biomes, WIDTH);
+            assertEquals(paletteSizes[i], container.getPalette().length);
+            assertEquals(bitsPerEntry[i], container.getBitsPerEntry());
+            assertArrayEquals(biomes, container.decode());
+            for (int z = 0; z < WIDTH; z++) {
+                for (int x = 0; x < WIDTH; x++) assertEquals(biomes[z * WIDTH + x], container.get(x, z));
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            container.write(new DataOutputStream(bytes));
+            assertEquals(container.getSerializedSize(), bytes.size());
+            PalettedBiomeContainer read = read(bytes.toByteArray());
+            assertArrayEquals(container.getPalette(), read.getPalette());
+            assertArrayEquals(biomes, read.decode());
+        }
+    }
+
+    @Test
+    void rejectsColumnsOutsideTheChunk() {
+        PalettedBiomeContainer container = PalettedBiomeContainer.of(getBiomes(3), WIDTH);
+        assertThrows(IndexOutOfBoundsException.class, () -> container.get(-1, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> container.get(WIDTH, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> container.get(0, -1));
+        assertThrows(IndexOutOfBoundsException.class, () -> container.get(0, WIDTH));
+        // Would still be inside the data of the container
+        assertThrows(IndexOutOfBoundsException.class, () -> container.get(WIDTH + 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> PalettedBiomeContainer.of(new int[0], 0));
+        assertThrows(IllegalArgumentException.class, () -> PalettedBiomeContainer.of(new int[4], 3));
+    }
+
+    @Test
+    void readRejectsIndicesPastThePalette() throws IOException {
+        // Two and three bits per entry, where the largest indices are past the palette
+        for (int paletteSize : new int[]{3, 5}) {
+            PalettedBiomeContainer container = PalettedBiomeContainer.of(getBiomes(paletteSize), WIDTH);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            container.write(new DataOutputStream(bytes));
+            byte[] data = bytes.toByteArray();
+            // Sets every bit of the first column, in the lowest byte of the first long.
+            data[Short.BYTES * 2 + paletteSize * Integer.BYTES + Long.BYTES - 1] |=
+                    (byte) ((1 << container.getBitsPerEntry()) - 1);
+            assertThrows(IOException.class, () -> read(data));
+        }
+        assertThrows(IOException.class, () -> read(new byte[]{0, 0, 0, 1, 0, 0, 0, 0}));
+        assertThrows(IOException.class, () -> read(new byte[]{0, 2, 0, 5, 0, 0, 0, 0}));
+    }
+
+    // Every biome of the palette appears, not in order of their ids.
+    private static int[] getBiomes(int paletteSize) {
+        int[] biomes = new int[WIDTH * WIDTH];
+        for (int column = 0; column < biomes.length; column++) biomes[column] = 100 + (column * 7 % paletteSize) * 3;
+        return biomes;
+    }
+
+    private static PalettedBiomeContainer read(byte[] bytes) throws IOException {
+        return PalettedBiomeContainer.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo.noise;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastNoiseTest {
+
+    private static final FastNoise.NoiseType[] NOISE_TYPES = {FastNoise.NoiseType.OpenSimplex2,
+            FastNoise.NoiseType.OpenSimplex2S, FastNoise.NoiseType.Perlin, FastNoise.NoiseType.Value};
+    private static final FastNoise.FractalType[] FRACTAL_TYPES = {FastNoise.FractalType.FBm,
+            FastNoise.FractalType.Ridged, FastNoise.FractalType.PingPong};
+    private static final double[] GAINS = {0.5, 0.8, -0.5, -0.8, 0.1};
+    private static final double[] WEIGHTED_STRENGTHS = {0, 0.7};
+    private static final int SAMPLES = 200;
+
+    @Test
+    void zeroToleranceMatchesGetNoise() {
+        forEachSetting((noise, random) -> {
+            for (int i = 0; i < SAMPLES; i++) {
+                final double x = (random.nextDouble() - 0.5) * 10000;
+                final double y = (random.nextDouble() - 0.5) * 10000;
+                final double z = (random.nextDouble() - 0.5) * 10000;
+                assertEquals(Double.doubleToRawLongBits(noise.getNoise(x, y)),
+                        Double.doubleToRawLongBits(noise.getNoiseWithTolerance(x, y, 0)));
+                assertEquals(Double.doubleToRawLongBits(noise.getNoise(x, y, z)),
+                        Double.doubleToRawLongBits(noise.getNoiseWithTolerance(x, y, z, 0)));
+            }
+        });
+    }
+
+    @Test
+    void positiveToleranceStaysWithinBound() {
+        final double[] tolerances = {1e-4, 0.01, 0.05, 0.2};
+        int[] skipped = new int[1];
+        forEachSetting((noise, random) -> {
+            for (int i = 0; i < SAMPLES; i++) {
+                final double x = (random.nextDouble() - 0.5) * 10000;
+                final double y = (random.nextDouble() - 0.5) * 10000;
+                final double z = (random.nextDouble() - 0.5) * 10000;
+                for (double tolerance : tolerances) {
+                    final double exact = noise.getNoise(x, y);
+                    final double approximate = noise.getNoiseWithTolerance(x, y, tolerance);
+                    // Rounding of the partial sums aside
+                    assertEquals(exact, approximate, tolerance + 1e-12);
+                    assertEquals(noise.getNoise(x, y, z), noise.getNoiseWithTolerance(x, y, z, tolerance),
+                            tolerance + 1e-12);
+                    if (exact != approximate) skipped[0]++;
+                }
+            }
+        });
+        // Otherwise the bound held trivially.
+        assertTrue(skipped[0] > 0);
+    }
+
+    @Test
+    void cellularGridMatchesPerSample() {
+        // Steps below a cell, across several cells per sample and backwards, so rows reuse, shift and refill cells.
+        final double[] steps = {0.37, 1, 7.5, 61, -3.25};
+        final int width = 23;
+        final int height = 19;
+        Random random = new Random(7);
+        for (FastNoise.CellularDistanceFunction distanceFunction : FastNoise.CellularDistanceFunction.values()) {
+            for (FastNoise.CellularReturnType returnType : FastNoise.CellularReturnType.values()) {
+                FastNoise noise = new FastNoise(random.nextLong());
+                noise.setNoiseType(FastNoise.NoiseType.Cellular);
+                noise.setFrequency(0.05);
+                noise.setCellularDistanceFunction(distanceFunction);
+                noise.setCellularReturnType(returnType);
+                noise.setCellularJitter(random.nextDouble() * 1.2);
+                for (double step : steps) {
+                    final double x = (random.nextDouble() - 0.5) * 100000;
+                    final double y = (random.nextDouble() - 0.5) * 100000;
+                    double[] grid = new double[width * height];
+                    noise.getNoiseGrid(x, y, step, width, height, grid);
+                    for (int row = 0; row < height; row++) {
+                        for (int column = 0; column < width; column++) {
+                            assertEquals(Double.doubleToRawLongBits(noise.getNoise(x + column * step, y + row * step)),
+                                    Double.doubleToRawLongBits(grid[row * width + column]),
+                                    distanceFunction + " " + returnType + " at " + column + ", " + row);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void forEachSetting(BiConsumer<FastNoise, Random> test) {
+        Random random = new Random(42);
+        for (FastNoise.NoiseType noiseType : NOISE_TYPES) {
+            for (FastNoise.FractalType fractalType : FRACTAL_TYPES) {
+                for (double gain : GAINS) {
+                    for (double weightedStrength : WEIGHTED_STRENGTHS) {
+                        FastNoise noise = new FastNoise(random.nextLong());
+                        noise.setFrequency(0.02);
+                        noise.setNoiseType(noiseType);
+                        noise.setFractalType(fractalType);
+                        noise.setFractalOctaves(6);
+                        noise.setFractalGain(gain);
+                        noise.setFractalWeightedStrength(weightedStrength);
+                        test.accept(noise, random);
+                    }
+                }
+            }
+        }
+    }
+
+}
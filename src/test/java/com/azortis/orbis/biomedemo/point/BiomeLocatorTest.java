@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.DimensionPack;
+import com.azortis.orbis.biomedemo.TestConfig;
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomeLocatorTest {
+
+    // The scanned area, wide enough to hold every circle searched
+    private static final int SCAN_MIN = -1024;
+    private static final int SCAN_SECTIONS = 16;
+    private static final double[][] STARTS = {{0, 0}, {-300.5, 211.25}, {377, -405}};
+    private static final double[] RADII = {60, 250, 600};
+    private static final long TIME_BUDGET = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void locatesTheClosestPointOfTheScan() {
+        DimensionPack pack = TestConfig.load();
+        Dimension dimension = pack.getDimensions().get(0);
+        CompiledDimension compiledDimension = CompiledDimension.compile(dimension);
+        BiomeLocator locator = new BiomeLocator(compiledDimension);
+        Map<Integer, List<double[]>> points = scan(compiledDimension);
+
+        int found = 0;
+        int missed = 0;
+        for (Biome biome : pack.getBiomes()) {
+            for (double[] start : STARTS) {
+                for (double radius : RADII) {
+                    final String name = biome.getName() + " from " + start[0] + ", " + start[1] + " within " + radius;
+                    double[] expected = getClosest(points, biome.getId(), start, radius);
+                    BiomeLocator.Result result = locator.locate(biome.getId(), start[0], start[1], radius,
+                            TIME_BUDGET);
+                    assertFalse(result.isTimedOut(), name);
+                    assertEquals(expected != null, result.isFound(), name + ": " + result);
+                    if (expected == null) {
+                        missed++;
+                        continue;
+                    }
+                    found++;
+                    // Points at the same distance may be either one.
+                    assertEquals(getDistanceSq(expected, start), getDistanceSq(new double[]{result.getX(),
+                            result.getZ()}, start), 1.0E-6d, name + ": " + result);
+                }
+            }
+        }
+        // Otherwise the comparison held trivially.
+        assertTrue(found > 0);
+        assertTrue(missed > 0);
+    }
+
+    @Test
+    void missesBiomesOutsideTheDimension() {
+        DimensionPack pack = TestConfig.load();
+        CompiledDimension compiledDimension = CompiledDimension.compile(pack.getDimensions().get(0));
+        int unknownId = 0;
+        for (Biome biome : pack.getBiomes()) unknownId = Math.max(unknownId, biome.getId() + 1);
+        BiomeLocator.Result result = new BiomeLocator(compiledDimension).locate(unknownId, 0, 0, 2000,
+                TIME_BUDGET);
+        assertFalse(result.isFound());
+        assertFalse(result.isTimedOut());
+        // No section can hold it, so none is gathered.
+        assertEquals(0, result.getSearchedSections());
+        assertTrue(result.getPrunedSections() > 0);
+    }
+
+    // The cell points in the scanned area by their biome, points near the edge of a section are in there more than
+    // once as the sections around them gather them as well.
+    private static Map<Integer, List<double[]>> scan(CompiledDimension compiledDimension) {
+        final Dimension dimension = compiledDimension.getDimension();
+        final NoiseFieldCache noiseCache = new NoiseFieldCache(dimension.getSeed(), 1.0d / dimension.getCellZoom(),
+                dimension.getPrecision(), false);
+        final int searchRadius = compiledDimension.getSearchRadius(0);
+        Map<Integer, List<double[]>> points = new HashMap<>();
+        for (int sectionZ = 0; sectionZ < SCAN_SECTIONS; sectionZ++) {
+            for (int sectionX = 0; sectionX < SCAN_SECTIONS; sectionX++) {
+                ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension, noiseCache,
+                        BiomeLocator.SECTION_WIDTH, searchRadius, SCAN_MIN + sectionX * BiomeLocator.SECTION_WIDTH,
+                        SCAN_MIN + sectionZ * BiomeLocator.SECTION_WIDTH);
+                List<? extends GatheredPoint<?>> cellPoints = sampler.getCellPoints();
+                int[] biomes = sampler.getCellBiomes();
+                for (int i = 0; i < biomes.length; i++) {
+                    final GatheredPoint<?> point = cellPoints.get(i);
+                    points.computeIfAbsent(biomes[i], biome -> new ArrayList<>())
+                            .add(new double[]{point.getX(), point.getZ()});
+                }
+            }
+        }
+        return points;
+    }
+
+    private static double[] getClosest(Map<Integer, List<double[]>> points, int biome, double[] start,
+                                       double radius) {
+        double[] closest = null;
+        double bestDistanceSq = radius * radius;
+        for (double[] point : points.getOrDefault(biome, Collections.emptyList())) {
+            final double distanceSq = getDistanceSq(point, start);
+            if (distanceSq <= bestDistanceSq) {
+                bestDistanceSq = distanceSq;
+                closest = point;
+            }
+        }
+        return closest;
+    }
+
+    private static double getDistanceSq(double[] point, double[] start) {
+        final double dX = point[0] - start[0];
+        final double dZ = point[1] - start[1];
+        return dX * dX + dZ * dZ;
+    }
+
+}
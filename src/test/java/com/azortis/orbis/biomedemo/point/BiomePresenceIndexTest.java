@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.DimensionPack;
+import com.azortis.orbis.biomedemo.TestConfig;
+import com.azortis.orbis.biomedemo.objects.Biome;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BiomePresenceIndexTest {
+
+    // The sampled square, spanning three areas on each axis
+    private static final int MIN = -384;
+    private static final int SIZE = 768;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void answersLikeSamplingEveryBlock() {
+        DimensionPack pack = TestConfig.load();
+        CompiledDimension compiledDimension = CompiledDimension.compile(pack.getDimensions().get(0));
+        BiomePresenceIndex index = new BiomePresenceIndex(compiledDimension);
+        int[] blocks = sampleBlocks(compiledDimension);
+
+        List<int[]> rectangles = new ArrayList<>();
+        rectangles.add(new int[]{0, 0, 256, 256});
+        rectangles.add(new int[]{-256, -256, 512, 512});
+        rectangles.add(new int[]{-1, -1, 2, 2});
+        rectangles.add(new int[]{-300, 5, 600, 1});
+        Random random = new Random(3);
+        for (int i = 0; i < 16; i++) {
+            final int width = 1 + random.nextInt(SIZE / 2);
+            final int height = 1 + random.nextInt(SIZE / 2);
+            rectangles.add(new int[]{MIN + random.nextInt(SIZE - width), MIN + random.nextInt(SIZE - height), width,
+                    height});
+        }
+
+        for (int[] rectangle : rectangles) {
+            final BitSet present = getPresent(blocks, rectangle);
+            List<BitSet> queries = new ArrayList<>();
+            for (Biome biome : pack.getBiomes()) {
+                BitSet single = new BitSet();
+                single.set(biome.getId());
+                queries.add(single);
+            }
+            queries.add(present);
+            BitSet missingOne = (BitSet) present.clone();
+            missingOne.clear(present.nextSetBit(0));
+            queries.add(missingOne);
+
+            for (BitSet biomes : queries) {
+                final String name = "[" + rectangle[0] + ", " + rectangle[1] + ", " + rectangle[2] + ", " +
+                        rectangle[3] + "] " + biomes + " with " + present;
+                assertEquals(present.intersects(biomes), index.containsAny(rectangle[0], rectangle[1],
+                        rectangle[2], rectangle[3], biomes), name);
+                BitSet outside = (BitSet) present.clone();
+                outside.andNot(biomes);
+                assertEquals(outside.isEmpty(), index.containsOnly(rectangle[0], rectangle[1], rectangle[2],
+                        rectangle[3], biomes), name);
+            }
+        }
+        // Otherwise the rectangles never cut through an area its summary couldn't decide.
+        assertTrue(index.getSampledAreas() > 0);
+    }
+
+    @Test
+    void emptyRectangleContainsNothing() {
+        BiomePresenceIndex index = new BiomePresenceIndex(CompiledDimension.compile(TestConfig.load().getDimensions()
+                .get(0)));
+        BitSet none = new BitSet();
+        BitSet all = new BitSet();
+        all.set(0, 1024);
+        assertFalse(index.containsAny(0, 0, 0, 16, all));
+        assertFalse(index.containsAny(0, 0, 16, -1, all));
+        assertTrue(index.containsOnly(0, 0, 0, 0, none));
+        assertTrue(index.containsOnly(-5, 3, -16, 16, none));
+        assertEquals(0, index.getSummaryCount());
+    }
+
+    @Test
+    void loadsOnlyFilesOfTheSameConfig() throws IOException {
+        CompiledDimension compiledDimension = CompiledDimension.compile(TestConfig.load().getDimensions().get(0));
+        BiomePresenceIndex index = new BiomePresenceIndex(compiledDimension);
+        index.build(ForkJoinPool.commonPool(), -512, -512, 1024, 1024);
+        File indexFile = directory.resolve("index.bin").toFile();
+        index.write(indexFile);
+
+        BiomePresenceIndex loaded = new BiomePresenceIndex(compiledDimension);
+        assertTrue(loaded.load(indexFile));
+        assertEquals(index.getSummaryCount(), loaded.getSummaryCount());
+
+        // The same config with another region seed
+        CompiledDimension changed = CompiledDimension.compile(loadChanged("\"regionSeed\": 99", "\"regionSeed\": 100"));
+        assertNotEquals(compiledDimension.getFingerprint(), changed.getFingerprint());
+        BiomePresenceIndex stale = new BiomePresenceIndex(changed);
+        assertFalse(stale.load(indexFile));
+        assertEquals(0, stale.getSummaryCount());
+    }
+
+    // The biome of every block in the sampled square, from a single sampler over all of it.
+    private static int[] sampleBlocks(CompiledDimension compiledDimension) {
+        final Dimension dimension = compiledDimension.getDimension();
+        ChunkBiomePointSampler sampler = new ChunkBiomePointSampler(compiledDimension,
+                new NoiseFieldCache(dimension.getSeed(), 1.0d / dimension.getCellZoom(), dimension.getPrecision(),
+                        false), SIZE, compiledDimension.getSearchRadius(0), MIN, MIN);
+        int[] blocks = new int[SIZE * SIZE];
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) blocks[z * SIZE + x] = sampler.getBiomeAt(MIN + x, MIN + z);
+        }
+        return blocks;
+    }
+
+    private static BitSet getPresent(int[] blocks, int[] rectangle) {
+        BitSet present = new BitSet();
+        for (int z = rectangle[1]; z < rectangle[1] + rectangle[3]; z++) {
+            for (int x = rectangle[0]; x < rectangle[0] + rectangle[2]; x++) {
+                present.set(blocks[(z - MIN) * SIZE + x - MIN]);
+            }
+        }
+        return present;
+    }
+
+    // Copies the test config with a replacement in the dimension, and loads it.
+    private Dimension loadChanged(String target, String replacement) throws IOException {
+        final Path source = TestConfig.getRootDirectory().toPath();
+        final Path root = directory.resolve("config");
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path copy = root.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+        Path dimensionFile = root.resolve("dimensions").resolve("earth.json");
+        String json = new String(Files.readAllBytes(dimensionFile), StandardCharsets.UTF_8);
+        assertTrue(json.contains(target));
+        Files.write(dimensionFile, json.replace(target, replacement).getBytes(StandardCharsets.UTF_8));
+        DimensionPack pack = DimensionPack.fromConfig(root.toFile());
+        pack.validate();
+        return pack.getDimensions().get(0);
+    }
+
+}
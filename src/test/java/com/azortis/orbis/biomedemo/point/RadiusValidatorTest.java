@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Azortis
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.azortis.orbis.biomedemo.point;
+
+import com.azortis.orbis.biomedemo.ScatteredBiomeBlender;
+import com.azortis.orbis.biomedemo.TestConfig;
+import com.azortis.orbis.biomedemo.objects.Dimension;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RadiusValidatorTest {
+
+    // As BiomeDemo renders with
+    private static final int CHUNK_WIDTH = 16;
+    private static final ScatteredBiomeBlender BLENDER = new ScatteredBiomeBlender(0.04, 32, CHUNK_WIDTH);
+
+    @Test
+    void derivedSearchRadiusChangesNothing() {
+        for (Dimension dimension : TestConfig.load().getDimensions()) {
+            final int searchRadius = CompiledDimension.interpret(dimension)
+                    .getSearchRadius(BLENDER.getBlendKernelRadius());
+            RadiusValidator.Result result = RadiusValidator.validate(dimension, BLENDER, CHUNK_WIDTH, searchRadius,
+                    -256, -256, 512, 512);
+            assertTrue(result.getQueries() > 0);
+            assertEquals(0, result.getMissedPoints(), dimension.getName() + ": " + result);
+            assertEquals(0, result.getChangedBiomes(), dimension.getName() + ": " + result);
+        }
+    }
+
+    // The search radius the demo used before deriving it, why rendering pays for the larger one.
+    @Test
+    void fixedSearchRadiusMissesPoints() {
+        Dimension dimension = TestConfig.load().getDimensions().get(0);
+        RadiusValidator.Result result = RadiusValidator.validate(dimension, BLENDER, CHUNK_WIDTH, 42, -256, -256, 512,
+                512);
+        assertTrue(result.getMissedPoints() > 0, result.toString());
+        assertTrue(result.getChangedBiomes() > 0, result.toString());
+    }
+
+}